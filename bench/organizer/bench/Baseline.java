@@ -0,0 +1,74 @@
+package organizer.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.json.JSONObject;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+
+// JMH results saved as a baseline and later runs compared against it, so a change that makes a rule
+// slower is flagged instead of having to be spotted in two tables.
+public final class Baseline {
+    public record Entry(String name, double nanosPerOp, double errorPercent) {}
+
+    private static final double TOLERANCE_PERCENT = Double.parseDouble(System.getProperty("bench.tolerancePercent", "10"));
+
+    private Baseline(){}
+
+    // "ContentRuleBenchmarks.cold/pdf/4m": class and method without the package, then the parameter values
+    public static Entry entry(RunResult run){
+        BenchmarkParams params = run.getParams();
+        StringBuilder name = new StringBuilder(params.getBenchmark().substring(Baseline.class.getPackageName().length() + 1));
+        for (String key : params.getParamsKeys()) {
+            name.append('/').append(params.getParam(key));
+        }
+        Result<?> result = run.getPrimaryResult();   // average time, in ns/op as the benchmarks declare
+        // spread between iterations rather than JMH's 99.9% interval, which with a handful of rounds is so wide
+        // that no slowdown would ever be flagged
+        double spread = result.getStatistics().getN() > 1 ? result.getStatistics().getStandardDeviation() : 0;
+        return new Entry(name.toString(), result.getScore(), spread / result.getScore() * 100);
+    }
+
+    public static void save(List<Entry> entries, Path file) throws IOException {
+        JSONObject json = new JSONObject();
+        for (Entry entry : entries) {
+            json.put(entry.name(), new JSONObject()
+                    .put("nanosPerOp", entry.nanosPerOp())
+                    .put("errorPercent", entry.errorPercent()));
+        }
+        Files.writeString(file, json.toString(2));
+        System.out.println("Baseline written to " + file);
+    }
+
+    // prints the change against a saved baseline; returns false if anything got slower than the tolerance allows
+    // and by more than the two runs' round-to-round spread, so noisy benchmarks don't fail on their own
+    public static boolean compare(List<Entry> entries, Path baselineFile) throws IOException {
+        JSONObject baseline = new JSONObject(Files.readString(baselineFile));
+        boolean ok = true;
+        System.out.println();
+        System.out.println("Compared to " + baselineFile + " (slower than +" + TOLERANCE_PERCENT + "% is flagged):");
+        for (Entry entry : entries) {
+            JSONObject before = baseline.optJSONObject(entry.name());
+            if (before == null) {
+                System.out.printf("  %-46s new%n", entry.name());
+                continue;
+            }
+            double change = (entry.nanosPerOp() / before.getDouble("nanosPerOp") - 1) * 100;
+            double noise = before.optDouble("errorPercent", 0) + entry.errorPercent();
+            boolean regressed = change > Math.max(TOLERANCE_PERCENT, noise);
+            ok &= !regressed;
+            System.out.printf("  %-46s %14s -> %14s  %+6.1f%%%s%n", entry.name(),
+                    format(before.getDouble("nanosPerOp")), format(entry.nanosPerOp()), change, regressed ? "  SLOWER" : "");
+        }
+        return ok;
+    }
+
+    static String format(double nanos){
+        if (nanos >= 1_000_000) return String.format("%.2f ms", nanos / 1_000_000);
+        if (nanos >= 1_000) return String.format("%.2f us", nanos / 1_000);
+        return String.format("%.1f ns", nanos);
+    }
+}
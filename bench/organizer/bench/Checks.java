@@ -0,0 +1,564 @@
+package organizer.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import organizer.metrics.Counter;
+import organizer.metrics.Metrics;
+import organizer.move.NameRegistry;
+import organizer.rule.FileContext;
+import organizer.rule.NeedleScanner;
+import organizer.rule.StringContainedRule;
+import organizer.rule.TextCache;
+import organizer.rule.TextMatcher;
+import organizer.rule.TextStore;
+
+// Checks that the fast paths give the same answers as the plain code they stand in for: the shared
+// needle pass against TextMatcher.find, with case-insensitive needles found in any mix of case
+// whatever the default locale, streamed search of big files against a find over the whole text, and
+// the text store against what was put into it (also after reopening, compacting and a torn write), and
+// concurrent name reservations against each other. Inputs are seeded, so a failure can be repeated with the same --seed.
+//
+//   java -cp "out;lib/*" organizer.bench.Checks [--seed 1] [--rounds 2000] [--dir folder]
+//
+// Exit status: 0 everything agreed, 1 something didn't (the first few differences are printed).
+public class Checks {
+    private static final int MAX_REPORTED = 20;
+    private static final int STREAMED_TEXT_BYTES = 9 * 1024 * 1024;   // over StringContainedRule's streaming threshold
+    private static final int READ_CHUNK_CHARS = 64 * 1024;   // PlainTextExtractor's chunk, in ASCII text
+    private static final String ALPHABET = "abcabcABIi  \n-éÉßüÜ€📄";   // repeats make needles recur
+
+    private final Random random;
+    private final int rounds;
+    private int checked;
+    private int failed;
+
+    private Checks(long seed, int rounds){
+        this.random = new Random(seed);
+        this.rounds = rounds;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long seed = 1;
+        int rounds = 2000;
+        Path dir = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--rounds" -> rounds = Integer.parseInt(args[++i]);
+                case "--dir" -> dir = Paths.get(args[++i]);
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        boolean keepFiles = dir != null;
+        Path workDir = keepFiles ? dir : Files.createTempDirectory("neatfile-checks");
+        Checks checks = new Checks(seed, rounds);
+        try {
+            checks.run("NeedleScanner", checks::needleScanner);
+            checks.run("Streamed search", () -> checks.streamedSearch(workDir.resolve("streamed")));
+            checks.run("TextStore", () -> checks.textStore(workDir.resolve("store")));
+            checks.run("NameRegistry", () -> checks.nameRegistry(workDir.resolve("names")));
+        } finally {
+            NeedleScanner.install(List.of());
+            TextCache.shared().clear();
+            if (!keepFiles) {
+                Fixtures.deleteTree(workDir);
+            }
+        }
+
+        System.out.printf("%d checks, %d failed%n", checks.checked, checks.failed);
+        System.exit(checks.failed == 0 ? 0 : 1);
+    }
+
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    private void run(String name, Check check) throws Exception {
+        int checkedBefore = checked;
+        int failedBefore = failed;
+        long started = System.nanoTime();
+        check.run();
+        System.out.printf("%-16s %7d checks  %5d failed  %6.1f s%n", name, checked - checkedBefore, failed - failedBefore,
+                (System.nanoTime() - started) / 1e9);
+    }
+
+    private void expect(boolean ok, String what){
+        checked++;
+        if (!ok && ++failed <= MAX_REPORTED) {
+            System.out.println("  FAILED: " + what);
+        }
+    }
+
+    // random texts and needles over a small alphabet, so needles overlap, share prefixes and differ only in case.
+    // Runs under a Turkish default locale, where "I".toLowerCase() is a dotless i: folding has to ignore it
+    private void needleScanner(){
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            needleRounds();
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private void needleRounds(){
+        for (int round = 0; round < rounds; round++) {
+            String text = randomText(random.nextInt(400));
+            List<TextMatcher> matchers = new ArrayList<>();
+            List<String> foldedNeedles = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                String needle = random.nextBoolean() && text.length() > 0 ? mixCase(slice(text, 1 + random.nextInt(6)))
+                        : randomText(1 + random.nextInt(4));
+                boolean caseSensitive = random.nextBoolean();
+                matchers.add(TextMatcher.compile(needle, caseSensitive, false));
+                if (!caseSensitive) {
+                    foldedNeedles.add(needle);
+                }
+            }
+            NeedleScanner.install(matchers);
+
+            TextCache.Key key = new TextCache.Key(Paths.get("round-" + round), text.length(), round);
+            for (TextMatcher matcher : matchers) {
+                Boolean shared = NeedleScanner.current().contains(key, text, matcher);
+                expect(shared != null && shared == matcher.find(text), "needle " + quote(matcher.getKey()) + " in "
+                        + quote(text) + ": scanner " + shared + ", find " + matcher.find(text));
+            }
+            for (String needle : foldedNeedles) {
+                String recased = mixCase(needle);
+                expect(TextMatcher.compile(needle, false, false).find(recased), "case-insensitive needle " + quote(needle)
+                        + " in " + quote(recased));
+            }
+        }
+    }
+
+    // big .txt files go through the streaming path; every rule has to agree with a find over the whole text,
+    // first with all rules streamed in one pass, then with rules added to a file that was already streamed
+    private void streamedSearch(Path dir) throws IOException {
+        List<StringContainedRule> rules = List.of(
+                new StringContainedRule(Fixtures.NEEDLE, true, false),
+                new StringContainedRule("quarterly invoice", false, false),
+                new StringContainedRule("MARKER-", true, false),
+                new StringContainedRule("müller & söhne", false, false),
+                new StringContainedRule("never written anywhere", false, false),
+                new StringContainedRule("^Header", true, true),
+                new StringContainedRule("\\AHeader", true, true),
+                new StringContainedRule("(?m)^Invoice \\d{4}$", true, true),
+                new StringContainedRule("\\bcat\\b", true, true),
+                new StringContainedRule("(?<=price: )\\d{3}\\b", true, true),
+                new StringContainedRule("Trailer$", true, true),
+                new StringContainedRule("Trailer\\z", true, true),
+                new StringContainedRule("quarterly\\s+invoice\\s+2024", false, true),
+                new StringContainedRule("\uFFFD", true, false),
+                new StringContainedRule("MARKER-\\d+-END", true, true));
+
+        Files.createDirectories(dir);
+        for (int f = 0; f < 4; f++) {
+            Path file = dir.resolve("big-" + f + ".txt");
+            Files.write(file, streamedText(f));
+            String whole = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);   // bad bytes replaced, as streamed
+
+            // all rules known up front: one pass answers them all
+            install(rules);
+            TextCache.shared().clear();
+            FileContext context = new FileContext(file);
+            for (StringContainedRule rule : rules) {
+                expectSame(rule, context, whole, file, "one pass");
+            }
+            // the same file again, now answered from the remembered verdicts
+            for (StringContainedRule rule : rules) {
+                expectSame(rule, new FileContext(file), whole, file, "remembered");
+            }
+
+            // half the rules first, then the rest added: only the new ones are streamed, the old verdicts are kept
+            List<StringContainedRule> first = rules.subList(0, rules.size() / 2);
+            install(first);
+            TextCache.shared().clear();
+            for (StringContainedRule rule : first) {
+                expectSame(rule, new FileContext(file), whole, file, "first half");
+            }
+            install(rules);
+            context = new FileContext(file);
+            for (StringContainedRule rule : rules) {
+                expectSame(rule, context, whole, file, "rules added");
+            }
+        }
+    }
+
+    private void expectSame(StringContainedRule rule, FileContext context, String whole, Path file, String phase){
+        boolean streamed = rule.matches(context);
+        boolean expected = rule.getMatcher().find(whole);
+        expect(streamed == expected, phase + ": " + quote(rule.getMatcher().getKey()) + " in " + file.getFileName()
+                + ": streamed " + streamed + ", whole text " + expected);
+    }
+
+    private static void install(List<StringContainedRule> rules){
+        NeedleScanner.install(rules.stream().map(StringContainedRule::getMatcher).toList());
+    }
+
+    // words with the interesting lines dropped in at random places, so some of them straddle whatever
+    // window the streaming search uses; each file has a different subset so verdicts differ between files.
+    // The first few lines are lined up so a word starts exactly at a multiple of the 64 KiB read size, where
+    // a streamed window begins (the text before is ASCII, so chars and bytes line up): ^, \A and \b must not
+    // take that for the start of the text or of a word.
+    private byte[] streamedText(int variant){
+        StringBuilder text = new StringBuilder(STREAMED_TEXT_BYTES + 1024);
+        if (variant % 2 == 0) {
+            text.append("Header line\n");
+        }
+        List<String> aligned = new ArrayList<>(List.of("x|cat is not a word here", " |Header mid-line", "x|Invoice 2024"));
+        List<String> specials = new ArrayList<>(List.of(
+                "concatenate scatter cats category",
+                "Invoice 20245",
+                " Header not at the start",
+                "no price: 12345 here"));
+        if (variant != 1) specials.add("MARKER-" + random.nextInt(1000) + "-END");
+        if (variant != 2) specials.add("Müller & Söhne GmbH");
+        if (variant % 2 == 0) specials.add(Fixtures.NEEDLE);
+        if (variant == 0 || variant == 3) specials.add("Invoice 2024");
+        if (variant == 1 || variant == 3) specials.add("the cat sat");
+        if (variant == 2) specials.add("price: 250 each");
+        if (variant == 3) specials.add("QUARTERLY\nINVOICE  2024");
+        if (variant == 1) specials.add("Trailer in the middle");
+
+        int boundary = 3 * READ_CHUNK_CHARS;
+        while (text.length() < STREAMED_TEXT_BYTES) {
+            if (!aligned.isEmpty() && text.length() + 200 > boundary) {
+                String line = aligned.remove(0);
+                int bar = line.indexOf('|');
+                text.append(" ".repeat(boundary - bar - text.length())).append(line, 0, bar).append(line.substring(bar + 1)).append('\n');
+                boundary += 2 * READ_CHUNK_CHARS;
+                continue;
+            }
+            if (aligned.isEmpty() && !specials.isEmpty() && random.nextInt(20_000) == 0) {
+                text.append(specials.remove(random.nextInt(specials.size()))).append('\n');
+                continue;
+            }
+            text.append(Fixtures.lines(512, random.nextLong()).get(0)).append('\n');
+        }
+        for (String special : specials) {   // whatever the random walk didn't place goes near the end
+            text.append(special).append('\n');
+        }
+        if (variant % 2 == 1) {
+            text.append("Trailer");
+        }
+
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        if (variant == 2) {
+            bytes[bytes.length / 3] = (byte) 0xC3;   // a broken two-byte sequence, decoded as U+FFFD
+            bytes[bytes.length / 3 + 1] = '(';
+        }
+        return bytes;
+    }
+
+    // texts written, overwritten, read back after reopening, after the compaction reopening triggers once most
+    // of the data is stale, after the data file lost the tail of its last record, and around a compaction that
+    // starts in the background while texts keep being saved
+    private void textStore(Path dir) throws Exception {
+        Files.createDirectories(dir);
+        Path base = dir.resolve("texts");
+        int count = 300;
+        List<Path> files = new ArrayList<>();
+        Map<Path, String> texts = new HashMap<>();
+        Map<Path, Map<String, Boolean>> verdicts = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Path file = dir.resolve("doc-" + i + ".txt");
+            Files.writeString(file, "x".repeat(i + 1));
+            files.add(file);
+        }
+
+        TextStore store = TextStore.open(base);
+        for (int version = 0; version < 3; version++) {   // two overwrites: most of the data file is dead after this
+            for (Path file : files) {
+                String text = randomText(1 + random.nextInt(random.nextInt(10) == 0 ? 100_000 : 2_000));
+                store.put(key(file), text);
+                texts.put(file, text);
+                Map<String, Boolean> found = Map.of("li:" + randomText(5), random.nextBoolean(), "rs:^a\\d+", random.nextBoolean());
+                store.putVerdicts(key(file), found);
+                verdicts.put(file, found);
+            }
+        }
+        expectStored(store, files, texts, verdicts, "written");
+        concurrentPuts(store, files, texts);
+        expectStored(store, files, texts, verdicts, "written concurrently");
+        Path changed = files.get(0);
+        expect(store.get(new TextCache.Key(changed, Files.size(changed), Files.getLastModifiedTime(changed).toMillis() + 1)) == null,
+                "text for a changed file is not returned");
+        store.close();
+
+        Path dataFile = base.resolveSibling("texts.dat");
+        long before = Files.size(dataFile);
+        store = TextStore.open(base);   // compacts: dead bytes outweigh live ones
+        expectStored(store, files, texts, verdicts, "reopened");
+        expect(Files.size(dataFile) < before / 2, "compaction dropped the overwritten records");
+        Path last = files.get(count - 1);
+        store.put(key(last), "a newer text, about to be torn " + randomText(2_000));
+        store.close();
+
+        try (FileChannel data = FileChannel.open(dataFile, StandardOpenOption.WRITE)) {
+            data.truncate(data.size() - 10);   // as if the machine went down halfway through the write
+        }
+        store = TextStore.open(base);   // the torn record is dropped; the text it replaced is gone already
+        expect(store.get(key(last)) == null, "a torn record reads as missing, not as garbage");
+        expectStored(store, files.subList(0, count - 1), texts, verdicts, "after a torn write");
+        expect(verdicts.get(last).equals(store.getVerdicts(key(last))), "verdicts next to a torn record");
+
+        backgroundCompaction(store, files.subList(0, 20), texts, dataFile);
+        for (Path file : files) {   // after the swap every save has to land again
+            String text = randomText(1 + random.nextInt(2_000));
+            store.put(key(file), text);
+            texts.put(file, text);
+        }
+        expectStored(store, files, texts, verdicts, "after a background compaction");
+        store.close();
+    }
+
+    // big texts saved over and over from several threads until the stale ones outweigh the rest, which starts a
+    // compaction while saves and lookups go on: a lookup may find an older save for the file, but nothing else,
+    // and a save that raced the swap must not leave the file without any text at all
+    private void backgroundCompaction(TextStore store, List<Path> files, Map<Path, String> texts, Path dataFile) throws Exception {
+        Counter compactions = Metrics.shared().counter("TextStore", "compactions");
+        long compactionsBefore = compactions.getCount();
+        Map<Path, Set<String>> saved = new ConcurrentHashMap<>();
+        for (Path file : files) {
+            Set<String> versions = ConcurrentHashMap.newKeySet();
+            versions.add(texts.get(file));
+            saved.put(file, versions);
+        }
+        long largestBefore = Files.size(dataFile);
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<String> problems = new ArrayList<>();
+        long largest;
+        try {
+            List<Future<List<String>>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                long seed = random.nextLong();
+                done.add(pool.submit(() -> {
+                    Random own = new Random(seed);
+                    List<String> results = new ArrayList<>();   // null for a lookup that was fine
+                    for (int i = first; i < 400; i += threads) {
+                        Path file = files.get(i % files.size());   // threads save disjoint files, look up any
+                        String text = "thread " + first + " " + own.nextInt() + " " + randomText(100_000 + own.nextInt(100_000), own);
+                        store.put(key(file), text);
+                        saved.get(file).add(text);
+                        Path other = files.get(own.nextInt(files.size()));
+                        String found = store.get(key(other));
+                        results.add(found == null || saved.get(other).contains(found) ? null
+                                : "during a background compaction: text for " + other.getFileName() + " is another file's or garbage");
+                    }
+                    return results;
+                }));
+            }
+            for (Future<List<String>> future : done) {
+                problems.addAll(future.get());
+            }
+            largest = Math.max(largestBefore, Files.size(dataFile));
+        } finally {
+            pool.shutdown();
+        }
+        for (String problem : problems) {
+            expect(problem == null, problem);
+        }
+
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (compactions.getCount() == compactionsBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        expect(compactions.getCount() > compactionsBefore, "no compaction started while running");
+        store.get(key(files.get(0)));   // waits for a swap in progress
+        for (Path file : files) {
+            String found = store.get(key(file));
+            expect(found != null && saved.get(file).contains(found), "after a background compaction: text for "
+                    + file.getFileName() + " is " + (found == null ? "missing" : "another file's or garbage"));
+        }
+    }
+
+    private void concurrentPuts(TextStore store, List<Path> files, Map<Path, String> texts) throws Exception {
+        int threads = 4;
+        Map<Path, String> written = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                long seed = random.nextLong();
+                done.add(pool.submit(() -> {
+                    Random own = new Random(seed);
+                    for (int i = first; i < files.size(); i += threads) {   // disjoint files, interleaved reads
+                        Path file = files.get(i);
+                        String text = "thread " + first + " " + own.nextInt() + " " + "z".repeat(own.nextInt(5_000));
+                        store.put(key(file), text);
+                        written.put(file, text);
+                        store.get(key(files.get(own.nextInt(files.size()))));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        texts.putAll(written);
+    }
+
+    private void expectStored(TextStore store, List<Path> files, Map<Path, String> texts,
+                              Map<Path, Map<String, Boolean>> verdicts, String phase) throws IOException {
+        for (Path file : files) {
+            String text = store.get(key(file));
+            expect(texts.get(file).equals(text), phase + ": text for " + file.getFileName() + " is "
+                    + (text == null ? "missing" : "different"));
+            expect(verdicts.get(file).equals(store.getVerdicts(key(file))), phase + ": verdicts for " + file.getFileName());
+        }
+    }
+
+    private static TextCache.Key key(Path file) throws IOException {
+        return new TextCache.Key(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+    }
+
+    // many threads claiming the same name in one folder, some numbers already taken by other files or by
+    // placeholders, enough claims to make the registry list the folder again partway through
+    private void nameRegistry(Path dir) throws Exception {
+        Files.createDirectories(dir);
+        Set<Path> existing = new HashSet<>();
+        for (int n : new int[]{ 0, 3, 4, 50, 700 }) {
+            Path file = dir.resolve(n == 0 ? "report.pdf" : "report_" + n + ".pdf");
+            Files.writeString(file, "someone else's");
+            existing.add(file);
+        }
+        Set<Path> taken = new HashSet<>(existing);
+        Path recent = dir.resolve("report_5.pdf");   // a placeholder of another instance's move in progress
+        Files.createFile(NameRegistry.placeholder(recent));
+        taken.add(recent);
+        Path stale = NameRegistry.placeholder(dir.resolve("report_6.pdf"));   // left by a run that ended mid-move
+        Files.createFile(stale);
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 24 * 60 * 60 * 1000L));
+
+        NameRegistry names = new NameRegistry();
+        int threads = 8;
+        int perThread = Math.max(50, rounds / 4);
+        List<Path> reserved = reserveAll(names, dir, threads, perThread);
+        expectDistinct(reserved, taken, threads * perThread, "first claims");
+        expect(reserved.contains(dir.resolve("report_6.pdf"))
+                        && Files.getLastModifiedTime(stale).toMillis() > System.currentTimeMillis() - 60 * 60 * 1000L,
+                "stale placeholder " + stale.getFileName() + " swept and its name handed out again");
+
+        // give back every third name, as failed moves do, and finish every third, as moves that made it do;
+        // then claim again: freed names may come back, held and moved ones not
+        List<Path> held = new ArrayList<>();
+        for (int i = 0; i < reserved.size(); i++) {
+            Path name = reserved.get(i);
+            if (i % 3 == 0) {
+                names.release(name);
+                expect(!Files.exists(NameRegistry.placeholder(name)), "released placeholder for " + name.getFileName() + " is gone");
+                continue;
+            }
+            if (i % 3 == 1) {
+                Files.writeString(name, "moved here");
+                names.moved(name);
+                expect(!Files.exists(NameRegistry.placeholder(name)), "placeholder for moved " + name.getFileName() + " is gone");
+            }
+            held.add(name);
+        }
+        List<Path> again = reserveAll(names, dir, threads, perThread / 2);
+        taken.addAll(held);
+        expectDistinct(again, taken, threads * (perThread / 2), "claims after releases");
+        for (Path file : existing) {
+            expect(Files.readString(file).equals("someone else's"), "existing " + file.getFileName() + " untouched");
+        }
+    }
+
+    private static List<Path> reserveAll(NameRegistry names, Path dir, int threads, int perThread) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Path>>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    List<Path> mine = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        mine.add(names.reserve(dir, "report.pdf"));
+                    }
+                    return mine;
+                }));
+            }
+            List<Path> all = new ArrayList<>();
+            for (Future<List<Path>> future : done) {
+                all.addAll(future.get());
+            }
+            return all;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void expectDistinct(List<Path> reserved, Set<Path> taken, int expectedCount, String phase){
+        Set<Path> seen = new HashSet<>();
+        for (Path file : reserved) {
+            expect(seen.add(file), phase + ": " + file.getFileName() + " handed out twice");
+            expect(!taken.contains(file), phase + ": " + file.getFileName() + " was already taken");
+            expect(Files.isRegularFile(NameRegistry.placeholder(file)), phase + ": no placeholder for " + file.getFileName());
+            expect(!Files.exists(file), phase + ": " + file.getFileName() + " exists before anything was moved there");
+        }
+        expect(reserved.size() == expectedCount, phase + ": " + reserved.size() + " names for " + expectedCount + " claims");
+    }
+
+    private String randomText(int length){
+        return randomText(length, random);
+    }
+
+    private static String randomText(int length, Random random){
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            int i = random.nextInt(ALPHABET.length());
+            if (Character.isHighSurrogate(ALPHABET.charAt(i))) {
+                text.append(ALPHABET, i, i + 2);   // keep the pair together, lone halves don't survive UTF-8
+            } else if (!Character.isLowSurrogate(ALPHABET.charAt(i))) {
+                text.append(ALPHABET.charAt(i));
+            }
+        }
+        return text.toString();
+    }
+
+    private String slice(String text, int length){
+        int start = random.nextInt(text.length());
+        return text.substring(start, Math.min(text.length(), start + length));
+    }
+
+    private String mixCase(String s){
+        StringBuilder mixed = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            mixed.append(random.nextBoolean() ? Character.toUpperCase(c) : Character.toLowerCase(c));
+        }
+        return mixed.toString();
+    }
+
+    private static String quote(String s){
+        String shown = s.length() > 60 ? s.substring(0, 60) + "..." : s;
+        return "\"" + shown.replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,73 @@
+package organizer.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import organizer.rule.FileContext;
+import organizer.rule.NeedleScanner;
+import organizer.rule.StringContainedRule;
+import organizer.rule.TextCache;
+
+// StringContainedRule on generated documents of every format and several sizes.
+// cold: text extracted on every call, the cost of a file seen for the first time;
+// cached: text already in the TextCache, as when several groups check the same file; for files over the
+// streaming threshold that is the verdicts from the one streamed pass rather than the text.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContentRuleBenchmarks {
+    @Param({ "txt", "pdf", "docx", "xlsx", "pptx" })
+    public String format;
+
+    @Param({ "4k", "256k", "4m" })
+    public String size;
+
+    private final StringContainedRule literal = new StringContainedRule(Fixtures.NEEDLE, false, false);
+    private final StringContainedRule regex = new StringContainedRule("invoice \\d{4}-Q\\d", false, true);
+    private Path dir;
+    private Path file;
+
+    @Setup
+    public void writeDocument(BenchmarkParams params) throws IOException {
+        dir = Fixtures.benchDir("content");
+        file = Fixtures.write(dir.resolve(size), "document", format, Fixtures.parseSize(size), 42);
+        TextCache.shared().clear();
+        // cold times extraction plus the rule's own search; the cached ones get their answer from the shared pass
+        boolean cold = params.getBenchmark().endsWith(".cold");
+        NeedleScanner.install(cold ? List.of() : List.of(literal.getMatcher()));
+    }
+
+    @TearDown
+    public void deleteDocument() throws IOException {
+        NeedleScanner.install(List.of());
+        TextCache.shared().clear();
+        Fixtures.release(dir);
+    }
+
+    @Benchmark
+    public boolean cold(){
+        TextCache.shared().clear();
+        return literal.matches(new FileContext(file));
+    }
+
+    @Benchmark
+    public boolean cached(){
+        return literal.matches(new FileContext(file));
+    }
+
+    @Benchmark
+    public boolean cachedRegex(){
+        return regex.matches(new FileContext(file));
+    }
+}
@@ -0,0 +1,254 @@
+package organizer.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+// Writes test documents of a given text size in every format StringContainedRule reads. The text is
+// made of seeded random words, so runs are repeatable, and ends with NEEDLE, so a search for it has to
+// read the whole file. Office files are written as bare OOXML zips (only the parts the extractors open),
+// which keeps the fixtures independent of POI's full schema jars.
+public final class Fixtures {
+    public static final String NEEDLE = "Quarterly Invoice 2024-Q3";
+    public static final List<String> FORMATS = List.of("txt", "pdf", "docx", "xlsx", "pptx");
+
+    private static final String[] WORDS = {
+        "report", "budget", "meeting", "project", "draft", "summary", "client", "review", "schedule",
+        "account", "payment", "contract", "notes", "design", "final", "team", "update", "order",
+        "shipping", "total", "the", "and", "for", "with", "from", "this", "that", "will", "about"
+    };
+    private static final int LINE_CHARS = 90;
+    private static final int LINES_PER_PAGE = 50;       // PDF page, pptx slide
+
+    // PDFBox logs a font fallback warning for every standard font on systems without them;
+    // held here because the logging framework only keeps loggers weakly
+    private static final Logger PDFBOX_LOG = Logger.getLogger("org.apache.pdfbox");
+    static {
+        PDFBOX_LOG.setLevel(Level.SEVERE);
+    }
+
+    private Fixtures(){}
+
+    // "4k", "256k", "4m" -> bytes of text
+    public static int parseSize(String size){
+        String s = size.trim().toLowerCase();
+        int factor = 1;
+        if (s.endsWith("k")) factor = 1024;
+        if (s.endsWith("m")) factor = 1024 * 1024;
+        if (factor > 1) s = s.substring(0, s.length() - 1);
+        return Integer.parseInt(s) * factor;
+    }
+
+    public static Path write(Path dir, String baseName, String format, int textBytes, long seed) throws IOException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve(baseName + "." + format);
+        List<String> lines = lines(textBytes, seed);
+        switch (format) {
+            case "txt" -> Files.write(file, lines, StandardCharsets.UTF_8);
+            case "pdf" -> writePdf(file, lines);
+            case "docx" -> writeDocx(file, lines);
+            case "xlsx" -> writeXlsx(file, lines);
+            case "pptx" -> writePptx(file, lines);
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        return file;
+    }
+
+    public static void age(Path file, long days) throws IOException {   // for LastModifiedRule
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - days * 24 * 60 * 60 * 1000));
+    }
+
+    // folder for a benchmark's files: under bench.dir when RuleBenchmarks was given --dir (kept afterwards),
+    // otherwise a temporary one that release() deletes again
+    static Path benchDir(String name) throws IOException {
+        String kept = System.getProperty("bench.dir");
+        return kept != null ? Files.createDirectories(Paths.get(kept, name)) : Files.createTempDirectory("neatfile-bench-" + name);
+    }
+
+    static void release(Path benchDir) throws IOException {
+        if (System.getProperty("bench.dir") == null) {
+            deleteTree(benchDir);
+        }
+    }
+
+    static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            List<Path> all = new ArrayList<>(paths.sorted(Comparator.reverseOrder()).toList());
+            for (Path path : all) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    static List<String> lines(int textBytes, long seed){
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>();
+        int written = 0;
+        while (written < textBytes - NEEDLE.length()) {
+            StringBuilder line = new StringBuilder(LINE_CHARS + 16);
+            while (line.length() < LINE_CHARS) {
+                if (line.length() > 0) line.append(' ');
+                line.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            lines.add(line.toString());
+            written += line.length() + 1;
+        }
+        lines.add(NEEDLE);
+        return lines;
+    }
+
+    private static void writePdf(Path file, List<String> lines) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int start = 0; start < lines.size(); start += LINES_PER_PAGE) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 8);
+                    content.setLeading(12);
+                    content.newLineAtOffset(40, 750);
+                    for (String line : lines.subList(start, Math.min(lines.size(), start + LINES_PER_PAGE))) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+    }
+
+    private static void writeDocx(Path file, List<String> lines) throws IOException {
+        try (Ooxml zip = new Ooxml(file)) {
+            zip.contentTypes("<Override PartName=\"/word/document.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>");
+            zip.rootRelationship("word/document.xml");
+            Writer out = zip.part("word/document.xml");
+            out.write("<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body>");
+            for (String line : lines) {
+                out.write("<w:p><w:r><w:t>" + line + "</w:t></w:r></w:p>");
+            }
+            out.write("</w:body></w:document>");
+        }
+    }
+
+    private static void writePptx(Path file, List<String> lines) throws IOException {
+        try (Ooxml zip = new Ooxml(file)) {
+            int slides = (lines.size() + LINES_PER_PAGE - 1) / LINES_PER_PAGE;
+            StringBuilder types = new StringBuilder("<Override PartName=\"/ppt/presentation.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.presentationml.presentation.main+xml\"/>");
+            for (int i = 1; i <= slides; i++) {
+                types.append("<Override PartName=\"/ppt/slides/slide").append(i)
+                        .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.presentationml.slide+xml\"/>");
+            }
+            zip.contentTypes(types.toString());
+            zip.rootRelationship("ppt/presentation.xml");
+            zip.part("ppt/presentation.xml").write("<p:presentation xmlns:p=\"http://schemas.openxmlformats.org/presentationml/2006/main\"/>");
+            for (int i = 0; i < slides; i++) {
+                Writer out = zip.part("ppt/slides/slide" + (i + 1) + ".xml");
+                out.write("<p:sld xmlns:p=\"http://schemas.openxmlformats.org/presentationml/2006/main\" "
+                        + "xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\"><p:cSld><p:spTree><p:sp><p:txBody>");
+                for (String line : lines.subList(i * LINES_PER_PAGE, Math.min(lines.size(), (i + 1) * LINES_PER_PAGE))) {
+                    out.write("<a:p><a:r><a:t>" + line + "</a:t></a:r></a:p>");
+                }
+                out.write("</p:txBody></p:sp></p:spTree></p:cSld></p:sld>");
+            }
+        }
+    }
+
+    private static void writeXlsx(Path file, List<String> lines) throws IOException {
+        try (Ooxml zip = new Ooxml(file)) {
+            zip.contentTypes("<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+                    + "<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+            zip.rootRelationship("xl/workbook.xml");
+            zip.part("xl/workbook.xml").write("<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+                    + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                    + "<sheets><sheet name=\"Sheet1\" sheetId=\"1\" r:id=\"rId1\"/></sheets></workbook>");
+            zip.part("xl/_rels/workbook.xml.rels").write(Ooxml.RELS_START
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet1.xml\"/>"
+                    + "</Relationships>");
+            Writer out = zip.part("xl/worksheets/sheet1.xml");
+            out.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData>");
+            int row = 0;
+            // one row per line, one word per cell; string cells as cached values ("str") rather than shared or
+            // inline strings, which POI only reads through the full schema jar
+            for (String line : lines) {
+                row++;
+                out.write("<row r=\"" + row + "\">");
+                int column = 0;
+                for (String cell : line.equals(NEEDLE) ? new String[]{ line } : line.split(" ")) {
+                    out.write("<c r=\"" + columnName(column++) + row + "\" t=\"str\"><v>" + cell + "</v></c>");
+                }
+                out.write("</row>");
+            }
+            out.write("</sheetData></worksheet>");
+        }
+    }
+
+    private static String columnName(int column){
+        StringBuilder name = new StringBuilder();
+        for (int n = column + 1; n > 0; n = (n - 1) / 26) {
+            name.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return name.toString();
+    }
+
+    // minimal OPC package: content types, the root relationship, and whatever parts are written
+    private static final class Ooxml implements AutoCloseable {
+        static final String RELS_START = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">";
+
+        private final ZipOutputStream zip;
+        private final Writer writer;
+
+        Ooxml(Path file) throws IOException {
+            OutputStream out = Files.newOutputStream(file);
+            zip = new ZipOutputStream(out);
+            writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        }
+
+        void contentTypes(String overrides) throws IOException {
+            part("[Content_Types].xml").write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                    + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                    + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                    + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                    + overrides + "</Types>");
+        }
+
+        void rootRelationship(String target) throws IOException {
+            part("_rels/.rels").write(RELS_START
+                    + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\""
+                    + target + "\"/></Relationships>");
+        }
+
+        Writer part(String name) throws IOException {   // valid until the next part is started
+            writer.flush();
+            zip.putNextEntry(new ZipEntry(name));
+            return writer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+            zip.closeEntry();
+            zip.close();
+        }
+    }
+}
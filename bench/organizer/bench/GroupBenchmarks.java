@@ -0,0 +1,103 @@
+package organizer.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import organizer.NeatGroup;
+import organizer.rule.FileCategoryRule;
+import organizer.rule.FileContext;
+import organizer.rule.FileExtensionRule;
+import organizer.rule.LastModifiedRule;
+import organizer.rule.NameHasRule;
+import organizer.rule.NeedleScanner;
+import organizer.rule.Rule;
+import organizer.rule.StringContainedRule;
+import organizer.rule.TextCache;
+
+// NeatGroup.matches with realistic rule mixes; the evaluator orders rules cheapest first and stops at the first miss.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GroupBenchmarks {
+    private final NeatGroup byName = group(new FileExtensionRule(Set.of("pdf", "docx")), new NameHasRule("invoice", false, false));
+    private final NeatGroup byAge = group(new FileCategoryRule("Document"), new LastModifiedRule(30),
+            new NameHasRule("invoice_[a-z]+_\\d{4}", false, true));
+    private final StringContainedRule content = new StringContainedRule(Fixtures.NEEDLE, false, false);
+    private final NeatGroup byContent = group(content, new NameHasRule("invoice", false, false),
+            new FileExtensionRule(Set.of("pdf")), new LastModifiedRule(30));
+
+    private Path dir;
+    private Path invoice;
+    private Path photo;
+
+    @Setup
+    public void writeFiles() throws IOException {
+        dir = Fixtures.benchDir("groups");
+        invoice = Fixtures.write(dir, "Invoice_ACME_2024", "pdf", 16 * 1024, 7);
+        photo = Fixtures.write(dir, "IMG_20240301_181522", "txt", 1024, 8);
+        Fixtures.age(invoice, 90);
+        TextCache.shared().clear();
+        NeedleScanner.install(List.of(content.getMatcher()));
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        NeedleScanner.install(List.of());
+        TextCache.shared().clear();
+        Fixtures.release(dir);
+    }
+
+    @Benchmark
+    public boolean nameMatch(){
+        return byName.matches(new FileContext(invoice));
+    }
+
+    @Benchmark
+    public boolean nameMiss(){
+        return byName.matches(new FileContext(photo));
+    }
+
+    @Benchmark
+    public boolean metadataMatch(){
+        return byAge.matches(new FileContext(invoice));
+    }
+
+    @Benchmark
+    public boolean metadataMiss(){
+        return byAge.matches(new FileContext(photo));
+    }
+
+    @Benchmark
+    public boolean contentCached(){
+        return byContent.matches(new FileContext(invoice));
+    }
+
+    @Benchmark
+    public boolean contentCold(){
+        TextCache.shared().clear();
+        return byContent.matches(new FileContext(invoice));
+    }
+
+    @Benchmark
+    public boolean contentRejectedByName(){
+        return byContent.matches(new FileContext(photo));
+    }
+
+    private static NeatGroup group(Rule... rules){
+        NeatGroup group = new NeatGroup(Set.of(), null);
+        for (Rule rule : rules) {
+            group.addRule(rule);
+        }
+        return group;
+    }
+}
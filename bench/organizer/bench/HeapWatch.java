@@ -0,0 +1,101 @@
+package organizer.bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+// Heap and GC figures for the soak test. The high-water mark comes from frequent polls of used heap;
+// the live set is measured after a full GC at each sample point, and a steady upward trend in it over
+// the second half of the run is reported as a probable leak. GC time spent on those forced collections
+// is left out of the GC figures.
+public class HeapWatch {
+    private static final double MB = 1024 * 1024;
+    private static final double MIN_STEADY_MINUTES = 2;   // shorter runs are mostly warm-up, too noisy to judge
+
+    public record Verdict(double slopeMBPerMinute, double growthMB, int samples, boolean judged, boolean leaking) {}
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final long startGcMillis = gcMillis();
+    private final long startGcCount = gcCount();
+    private final List<double[]> live = new ArrayList<>();   // {minutes since start, MB live after GC}
+    private volatile long peakUsed;
+    private long forcedGcMillis;
+    private long forcedGcCount;
+
+    public void poll(){   // cheap, call often
+        long used = memory.getHeapMemoryUsage().getUsed();
+        if (used > peakUsed) peakUsed = used;
+    }
+
+    public synchronized void sampleLive(double minutes){
+        poll();
+        long gcBefore = gcMillis();
+        long countBefore = gcCount();
+        System.gc();
+        forcedGcMillis += gcMillis() - gcBefore;
+        forcedGcCount += gcCount() - countBefore;
+        live.add(new double[]{ minutes, memory.getHeapMemoryUsage().getUsed() / MB });
+    }
+
+    public synchronized double lastLiveMB(){
+        return live.isEmpty() ? 0 : live.get(live.size() - 1)[1];
+    }
+
+    public double peakMB(){
+        return peakUsed / MB;
+    }
+
+    public synchronized long appGcMillis(){
+        return gcMillis() - startGcMillis - forcedGcMillis;
+    }
+
+    public synchronized long appGcCount(){
+        return gcCount() - startGcCount - forcedGcCount;
+    }
+
+    // least-squares slope of the live heap over the second half of the samples (the first half is warm-up:
+    // caches and JIT filling up); a leak is a slope above the limit that also adds up to real growth
+    public synchronized Verdict verdict(double limitMBPerMinute){
+        List<double[]> steady = live.subList(live.size() / 2, live.size());
+        int n = steady.size();
+        if (n < 4 || steady.get(n - 1)[0] - steady.get(0)[0] < MIN_STEADY_MINUTES) {
+            return new Verdict(0, 0, n, false, false);
+        }
+
+        double meanX = 0, meanY = 0;
+        for (double[] p : steady) {
+            meanX += p[0];
+            meanY += p[1];
+        }
+        meanX /= n;
+        meanY /= n;
+        double covariance = 0, variance = 0;
+        for (double[] p : steady) {
+            covariance += (p[0] - meanX) * (p[1] - meanY);
+            variance += (p[0] - meanX) * (p[0] - meanX);
+        }
+        double slope = variance > 0 ? covariance / variance : 0;
+        double growth = steady.get(n - 1)[1] - steady.get(0)[1];
+        boolean leaking = slope > limitMBPerMinute && growth > limitMBPerMinute * (steady.get(n - 1)[0] - steady.get(0)[0]) / 2;
+        return new Verdict(slope, growth, n, true, leaking);
+    }
+
+    private long gcMillis(){
+        long total = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private long gcCount(){
+        long total = 0;
+        for (GarbageCollectorMXBean gc : collectors) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+}
@@ -0,0 +1,104 @@
+package organizer.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import organizer.rule.FileCategoryRule;
+import organizer.rule.FileContext;
+import organizer.rule.FileExtensionRule;
+import organizer.rule.LastModifiedRule;
+import organizer.rule.NameHasRule;
+import organizer.rule.Rule;
+
+// Rules that only look at a file's name and attributes. Each operation builds a fresh FileContext,
+// as the organizer does per file, so attribute reads are part of what is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NameRuleBenchmarks {
+    private final Rule extension = new FileExtensionRule(Set.of("pdf", "docx", "txt"));
+    private final Rule extensionMiss = new FileExtensionRule(Set.of("jpg", "png"));
+    private final Rule category = new FileCategoryRule("Document");
+    private final Rule categoryMiss = new FileCategoryRule("Video");
+    private final Rule literal = new NameHasRule("report", false, false);
+    private final Rule regex = new NameHasRule("report_\\d{4}-\\d{2}", false, true);
+    private final Rule lastModified = new LastModifiedRule(30);
+
+    private Path dir;
+    private Path report;
+    private Path photo;
+    private Path old;
+
+    @Setup
+    public void writeFiles() throws IOException {
+        dir = Fixtures.benchDir("names");
+        report = Fixtures.write(dir, "Project_Report_2024-03", "txt", 1024, 1);
+        photo = Fixtures.write(dir, "IMG_20240301_181522", "txt", 1024, 2);
+        old = Fixtures.write(dir, "archive_notes", "txt", 1024, 3);
+        Fixtures.age(old, 60);
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        Fixtures.release(dir);
+    }
+
+    @Benchmark
+    public boolean extensionMatch(){
+        return extension.matches(new FileContext(report));
+    }
+
+    @Benchmark
+    public boolean extensionMiss(){
+        return extensionMiss.matches(new FileContext(report));
+    }
+
+    @Benchmark
+    public boolean categoryMatch(){
+        return category.matches(new FileContext(report));
+    }
+
+    @Benchmark
+    public boolean categoryMiss(){
+        return categoryMiss.matches(new FileContext(report));
+    }
+
+    @Benchmark
+    public boolean nameHasLiteralMatch(){
+        return literal.matches(new FileContext(report));
+    }
+
+    @Benchmark
+    public boolean nameHasLiteralMiss(){
+        return literal.matches(new FileContext(photo));
+    }
+
+    @Benchmark
+    public boolean nameHasRegexMatch(){
+        return regex.matches(new FileContext(report));
+    }
+
+    @Benchmark
+    public boolean nameHasRegexMiss(){
+        return regex.matches(new FileContext(photo));
+    }
+
+    @Benchmark
+    public boolean lastModifiedMatch(){
+        return lastModified.matches(new FileContext(old));
+    }
+
+    @Benchmark
+    public boolean lastModifiedMiss(){
+        return lastModified.matches(new FileContext(report));
+    }
+}
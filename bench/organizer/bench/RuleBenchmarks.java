@@ -0,0 +1,83 @@
+package organizer.bench;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+// Runs the JMH rule benchmarks (NameRuleBenchmarks, ContentRuleBenchmarks, GroupBenchmarks) and keeps
+// a baseline of their results to compare later runs against. JMH's own launcher (org.openjdk.jmh.Main)
+// runs the same benchmarks with all of its options, just without the baseline.
+//
+//   java -cp "out;lib/*" organizer.bench.RuleBenchmarks [--filter regex] [--formats txt,pdf] [--sizes 4k,256k,4m]
+//        [--save baseline.json] [--baseline baseline.json] [--dir fixtures]
+//
+// With --baseline the run exits with status 1 if a benchmark got slower than bench.tolerancePercent.
+public class RuleBenchmarks {
+    private static final long WARMUP_MILLIS = Long.getLong("bench.warmupMillis", 1000L);
+    private static final long ROUND_MILLIS = Long.getLong("bench.roundMillis", 1000L);
+    private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+    private static final int FORKS = Integer.getInteger("bench.forks", 1);
+
+    public static void main(String[] args) throws Exception {
+        String filter = null;
+        String formats = null;
+        String sizes = null;
+        Path save = null;
+        Path baseline = null;
+        Path dir = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--filter" -> filter = args[++i];
+                case "--formats" -> formats = args[++i];
+                case "--sizes" -> sizes = args[++i];
+                case "--save" -> save = Paths.get(args[++i]);
+                case "--baseline" -> baseline = Paths.get(args[++i]);
+                case "--dir" -> dir = Paths.get(args[++i]);
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                // matched anywhere in e.g. "organizer.bench.ContentRuleBenchmarks.cold"
+                .include(filter != null ? filter : RuleBenchmarks.class.getPackageName() + "\\.\\w+Benchmarks\\.")
+                .warmupIterations(1)
+                .warmupTime(TimeValue.milliseconds(WARMUP_MILLIS))
+                .measurementIterations(ROUNDS)
+                .measurementTime(TimeValue.milliseconds(ROUND_MILLIS))
+                .forks(FORKS)
+                .shouldFailOnError(true);
+        if (formats != null) {
+            options.param("format", formats.split(","));
+        }
+        if (sizes != null) {
+            options.param("size", sizes.split(","));
+        }
+        if (dir != null) {
+            System.setProperty("bench.dir", dir.toAbsolutePath().toString());   // for -Dbench.forks=0
+            options.jvmArgsAppend("-Dbench.dir=" + dir.toAbsolutePath());
+        }
+
+        Collection<RunResult> runs = new Runner(options.build()).run();
+        List<Baseline.Entry> entries = new ArrayList<>();
+        for (RunResult run : runs) {
+            entries.add(Baseline.entry(run));
+        }
+
+        if (save != null) {
+            Baseline.save(entries, save);
+        }
+        if (baseline != null && !Baseline.compare(entries, baseline)) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package organizer.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+import organizer.FolderScanner;
+import organizer.NeatFileLogic;
+import organizer.metrics.Metrics;
+import organizer.metrics.MetricsReporter;
+import organizer.move.NameRegistry;
+
+// Runs the organizer headless against a generated watch tree for a set time and reports end-to-end
+// throughput, file-to-move latency, heap high-water mark, GC time and live-heap growth. Files are
+// created at a steady rate; the scan / watch / intake / rules / move path is NeatFileApp's FolderScanner.
+//
+//   java -cp "out;lib/*" organizer.bench.SoakTest --duration 600 --rate 200 --groups 12
+//
+// Exit status: 0 ok, 1 files misrouted or never moved, 2 steady heap growth (probable leak).
+public class SoakTest {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    static {
+        DEFAULTS.put("duration", "60");          // seconds of file creation
+        DEFAULTS.put("rate", "100");             // files created per second
+        DEFAULTS.put("initial", "0");            // files already waiting when the organizer starts
+        DEFAULTS.put("watchDirs", "4");
+        DEFAULTS.put("depth", "0");              // > 0: recursive watch folders, files spread over this many levels
+        DEFAULTS.put("groups", "8");
+        DEFAULTS.put("rules", "3");              // per group, 1-5: name, category, content, extension, regex name
+        DEFAULTS.put("formats", "txt:40,pdf:20,docx:20,xlsx:10,pptx:10");
+        DEFAULTS.put("sizes", "2k:70,64k:25,1m:5");
+        DEFAULTS.put("collisions", "0.05");      // share of files reusing a name already in the target
+        DEFAULTS.put("conflicts", "0.02");       // share matching two groups with different targets
+        DEFAULTS.put("unmatched", "0.1");        // share matching no group
+        DEFAULTS.put("watcher", "true");         // false: polling scans only, as when the watch service is missing
+        DEFAULTS.put("report", "10");            // seconds between progress lines and live-heap samples
+        DEFAULTS.put("drain", "60");             // seconds to wait for outstanding moves at the end
+        DEFAULTS.put("stay", "10");              // seconds unmatched / conflicting files are left before being deleted
+        DEFAULTS.put("clearTargets", "30");      // seconds between emptying the target folders, to bound disk use
+        DEFAULTS.put("leakLimit", "1.0");        // MB per minute of live-heap growth that counts as a leak
+        DEFAULTS.put("dir", "");                 // work folder, kept afterwards; default: a temporary folder, deleted
+        DEFAULTS.put("out", "");                 // also write the summary as JSON here
+        DEFAULTS.put("verbose", "false");        // keep the organizer's per-file console output
+    }
+
+    private record Pending(long createdNanos, int group) {}
+    private record Staying(Path file, long createdNanos) {}
+
+    private final Map<String, String> options;
+    private final PrintStream console = System.out;
+    private final NeatFileLogic organizer = new NeatFileLogic();
+    private final FolderScanner scanner = new FolderScanner(organizer);
+    private final HeapWatch heap = new HeapWatch();
+    private final LatencySample latency = new LatencySample();   // file created -> file in its target folder
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    private final Set<Path> staying = ConcurrentHashMap.newKeySet();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong moved = new AtomicLong();
+    private final AtomicLong renamed = new AtomicLong();
+    private final AtomicLong misrouted = new AtomicLong();
+    private final AtomicLong lastMoveNanos = new AtomicLong();
+    private volatile boolean running = true;
+    private Workload workload;
+    private long startNanos;
+
+    private SoakTest(Map<String, String> options){
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (int i = 0; i < args.length; i++) {
+            String key = args[i].startsWith("--") ? args[i].substring(2) : "";
+            if (!DEFAULTS.containsKey(key) || i + 1 >= args.length) {
+                System.out.println("Unknown option or missing value: " + args[i]);
+                System.out.println("Options (with defaults): " + DEFAULTS);
+                System.exit(2);
+            }
+            options.put(key, args[++i]);
+        }
+        System.exit(new SoakTest(options).run());
+    }
+
+    private int run() throws Exception {
+        boolean keep = !options.get("dir").isEmpty();
+        Path workDir = keep ? Paths.get(options.get("dir")).toAbsolutePath() : Files.createTempDirectory("neatfile-soak");
+        workload = new Workload(workDir, integer("watchDirs"), integer("depth"), integer("groups"), integer("rules"),
+                options.get("formats"), options.get("sizes"),
+                decimal("collisions"), decimal("conflicts"), decimal("unmatched"));
+        console.println("Soak test in " + workDir + " with " + options);
+
+        if (!Boolean.parseBoolean(options.get("verbose"))) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));   // the organizer logs every file
+        }
+        MetricsReporter metricsReporter = new MetricsReporter(workDir.resolve("metrics.json"));
+        try {
+            organizer.replaceGroups(workload.createGroups()).join();
+            organizer.setMoveListener(this::moved);
+            for (int i = 0; i < integer("initial"); i++) {
+                track(workload.create(), System.nanoTime());
+            }
+
+            startNanos = System.nanoTime();
+            scanner.start(Boolean.parseBoolean(options.get("watcher")));
+            metricsReporter.start();
+            Thread generator = new Thread(this::generate, "Soak-Generator");
+            generator.setDaemon(true);
+            generator.start();
+
+            long duration = integer("duration") * 1_000_000_000L;
+            long reportEvery = integer("report") * 1_000_000_000L;
+            long nextReport = startNanos + reportEvery;
+            while (System.nanoTime() - startNanos < duration) {
+                Thread.sleep(100);
+                heap.poll();
+                if (System.nanoTime() >= nextReport) {
+                    progress();
+                    nextReport += reportEvery;
+                }
+            }
+            running = false;
+            generator.join();
+
+            long drainUntil = System.nanoTime() + integer("drain") * 1_000_000_000L;
+            while (!pending.isEmpty() && System.nanoTime() < drainUntil) {
+                Thread.sleep(100);
+                heap.poll();
+            }
+            progress();
+            return summary(workDir);
+        } finally {
+            System.setOut(console);
+            metricsReporter.close();
+            scanner.close();
+            organizer.shutdown();
+            if (!keep) {
+                Fixtures.deleteTree(workDir);
+            }
+        }
+    }
+
+    private void generate(){
+        double perNano = decimal("rate") / 1e9;
+        long stayNanos = integer("stay") * 1_000_000_000L;
+        long clearEvery = integer("clearTargets") * 1_000_000_000L;
+        long nextClear = System.nanoTime() + clearEvery;
+        Queue<Staying> toDelete = new ArrayDeque<>();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                long due = (long) ((now - startNanos) * perNano);
+                while (created.get() < due && running) {
+                    Workload.Created file = workload.create();
+                    track(file, System.nanoTime());
+                    if (file.outcome() != Workload.Outcome.MOVE) {
+                        toDelete.add(new Staying(file.file(), System.nanoTime()));
+                    }
+                }
+                // files that should stay are left a while (to catch wrong moves), then removed like a user would
+                while (!toDelete.isEmpty() && now - toDelete.peek().createdNanos() > stayNanos) {
+                    Path file = toDelete.poll().file();
+                    staying.remove(file);
+                    Files.deleteIfExists(file);
+                }
+                if (now >= nextClear) {
+                    clearTargets();
+                    nextClear += clearEvery;
+                }
+                Thread.sleep(5);
+            }
+        } catch (IOException e) {
+            console.println("Generator failed: " + e);
+            running = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void track(Workload.Created file, long nanos){
+        created.incrementAndGet();
+        if (file.outcome() == Workload.Outcome.MOVE) {
+            pending.put(file.file(), new Pending(nanos, file.group()));
+        } else {
+            staying.add(file.file());
+        }
+    }
+
+    private void moved(Path source, Path target){
+        long now = System.nanoTime();
+        lastMoveNanos.set(now);
+        if (staying.remove(source)) {
+            misrouted.incrementAndGet();   // should have matched no group, or was a conflict
+            return;
+        }
+        Pending expected = pending.remove(source);
+        if (expected == null) return;   // a reused name whose earlier file was just moved
+        moved.incrementAndGet();
+        latency.record(now - expected.createdNanos());
+        if (workload.groupOf(target) != expected.group()) {
+            misrouted.incrementAndGet();
+        }
+        if (!target.getFileName().equals(source.getFileName())) {
+            renamed.incrementAndGet();
+        }
+    }
+
+    private void clearTargets() throws IOException {
+        for (int g = 0; g < workload.getGroups(); g++) {
+            Path dir = workload.targetDir(g);
+            if (!Files.isDirectory(dir)) continue;
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    if (!file.getFileName().toString().endsWith(NameRegistry.PLACEHOLDER_SUFFIX)) {   // moves in progress
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    private void progress(){
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        heap.sampleLive(seconds / 60);
+        console.printf("[%5.0fs] created %8d  moved %8d  %7.1f files/s  waiting %6d  intake %5d  p50 %8s  p99 %8s  heap %6.1f MB  live %6.1f MB%n",
+                seconds, created.get(), moved.get(), moved.get() / seconds, pending.size(), scanner.intakeSize(),
+                millis(latency.percentile(0.50)), millis(latency.percentile(0.99)), heap.peakMB(), heap.lastLiveMB());
+    }
+
+    private int summary(Path workDir) throws IOException {
+        double activeSeconds = (Math.max(lastMoveNanos.get(), startNanos + 1) - startNanos) / 1e9;
+        HeapWatch.Verdict leak = heap.verdict(decimal("leakLimit"));
+        long notMoved = pending.size();
+
+        JSONObject json = new JSONObject();
+        json.put("options", new JSONObject(options));
+        json.put("created", created.get());
+        json.put("moved", moved.get());
+        json.put("renamedOnCollision", renamed.get());
+        json.put("unmatched", Metrics.shared().counter("Files", "unmatched").getCount());
+        json.put("conflicts", Metrics.shared().counter("Files", "conflicts").getCount());
+        json.put("misrouted", misrouted.get());
+        json.put("notMoved", notMoved);
+        json.put("filesPerSecond", moved.get() / activeSeconds);
+        json.put("latencyP50Millis", latency.percentile(0.50) / 1e6);
+        json.put("latencyP99Millis", latency.percentile(0.99) / 1e6);
+        json.put("latencyMaxMillis", latency.max() / 1e6);
+        json.put("heapPeakMB", heap.peakMB());
+        json.put("gcCount", heap.appGcCount());
+        json.put("gcMillis", heap.appGcMillis());
+        json.put("gcPercent", heap.appGcMillis() / 10.0 / activeSeconds);
+        json.put("liveHeapSlopeMBPerMinute", leak.slopeMBPerMinute());
+        json.put("liveHeapGrowthMB", leak.growthMB());
+        json.put("leakChecked", leak.judged());
+        json.put("leakSuspected", leak.leaking());
+
+        console.println();
+        console.printf("Files:      %d created, %d moved (%d renamed on collision), %d unmatched, %d conflicts%n",
+                created.get(), moved.get(), renamed.get(), json.getLong("unmatched"), json.getLong("conflicts"));
+        console.printf("Throughput: %.1f files/s over %.1f s%n", json.getDouble("filesPerSecond"), activeSeconds);
+        console.printf("Latency:    p50 %s  p99 %s  max %s (file created -> in target; includes the %s ms quiet period)%n",
+                millis(latency.percentile(0.50)), millis(latency.percentile(0.99)), millis(latency.max()),
+                Long.getLong("neatfile.quietMillis", 2000L));
+        console.printf("Heap:       peak %.1f MB, live at end %.1f MB%n", heap.peakMB(), heap.lastLiveMB());
+        console.printf("GC:         %d collections, %d ms (%.1f%% of the run)%n",
+                heap.appGcCount(), heap.appGcMillis(), json.getDouble("gcPercent"));
+        if (!leak.judged()) {
+            console.println("Leak check: skipped, needs at least 4 samples over 2+ minutes after warm-up (run 5+ minutes)");
+        } else {
+            console.printf("Leak check: live heap %+.2f MB/min over the last %d samples (%+.1f MB)%s%n",
+                    leak.slopeMBPerMinute(), leak.samples(), leak.growthMB(),
+                    leak.leaking() ? "  STEADY GROWTH, possible leak" : ", ok");
+        }
+        if (misrouted.get() > 0 || notMoved > 0) {
+            console.printf("Problems:   %d misrouted, %d never moved%n", misrouted.get(), notMoved);
+        }
+
+        if (!options.get("out").isEmpty()) {
+            Files.writeString(Paths.get(options.get("out")), json.toString(2));
+        }
+        if (!options.get("dir").isEmpty()) {
+            console.println("Metrics per rule, format and folder: " + workDir.resolve("metrics.json"));
+        }
+        if (misrouted.get() > 0 || notMoved > 0) return 1;
+        return leak.leaking() ? 2 : 0;
+    }
+
+    private static String millis(long nanos){
+        return nanos >= 1_000_000_000 ? String.format("%.2fs", nanos / 1e9) : String.format("%.1fms", nanos / 1e6);
+    }
+
+    // uniform random sample of all latencies (reservoir sampling): exact enough percentiles in fixed memory,
+    // so the harness itself doesn't show up as heap growth on long runs
+    private static final class LatencySample {
+        private final long[] samples = new long[1 << 16];
+        private final Random random = new Random(1);
+        private long seen;
+        private long max;
+
+        synchronized void record(long nanos){
+            if (seen < samples.length) {
+                samples[(int) seen] = nanos;
+            } else {
+                long slot = (long) (random.nextDouble() * (seen + 1));
+                if (slot < samples.length) samples[(int) slot] = nanos;
+            }
+            seen++;
+            max = Math.max(max, nanos);
+        }
+
+        synchronized long percentile(double p){
+            int n = (int) Math.min(seen, samples.length);
+            if (n == 0) return 0;
+            long[] sorted = Arrays.copyOf(samples, n);
+            Arrays.sort(sorted);
+            return sorted[Math.min(n - 1, (int) Math.ceil(p * n) - 1)];
+        }
+
+        synchronized long max(){
+            return max;
+        }
+    }
+
+    private int integer(String key){
+        return Integer.parseInt(options.get(key));
+    }
+
+    private double decimal(String key){
+        return Double.parseDouble(options.get(key));
+    }
+}
@@ -0,0 +1,194 @@
+package organizer.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import organizer.NeatGroup;
+import organizer.rule.FileCategoryRule;
+import organizer.rule.FileExtensionRule;
+import organizer.rule.NameHasRule;
+import organizer.rule.Rule;
+import organizer.rule.StringContainedRule;
+import organizer.scan.WatchOptions;
+
+// Synthetic watch trees for the soak test: groups g0..gN each pick up files named "...-g<i>-...",
+// every group watches every watch directory, and new files are copied from pre-generated templates
+// in a weighted mix of formats and sizes. A share of the files is made to match no group, to match two
+// groups with different targets (a conflict, so the file stays), or to reuse a name already moved
+// (so the target needs a "_N" name).
+public class Workload {
+    public enum Outcome { MOVE, UNMATCHED, CONFLICT }
+
+    public record Created(Path file, Outcome outcome, int group) {}
+
+    private final Path watchRoot;
+    private final Path targetRoot;
+    private final int watchDirs;
+    private final int depth;
+    private final int groups;
+    private final int rulesPerGroup;
+    private final double collisions;
+    private final double conflicts;
+    private final double unmatched;
+    private final Weighted formats;
+    private final Weighted sizes;
+    private final Map<String, Path> templates = new HashMap<>();   // "pdf/64k" -> file
+    private final Random random = new Random(20240301);
+    private final String[][] recentNames;   // per group, names already handed out, reused for collisions
+    private long sequence;
+
+    public Workload(Path workDir, int watchDirs, int depth, int groups, int rulesPerGroup, String formatMix, String sizeMix,
+                    double collisions, double conflicts, double unmatched) throws IOException {
+        this.watchRoot = workDir.resolve("watch");
+        this.targetRoot = workDir.resolve("targets");
+        this.watchDirs = watchDirs;
+        this.depth = depth;
+        this.groups = groups;
+        this.rulesPerGroup = Math.max(1, Math.min(5, rulesPerGroup));
+        this.collisions = collisions;
+        this.conflicts = groups > 1 ? conflicts : 0;
+        this.unmatched = unmatched;
+        this.formats = new Weighted(formatMix);
+        this.sizes = new Weighted(sizeMix);
+        this.recentNames = new String[groups][64];
+
+        Path templateDir = workDir.resolve("templates");
+        long seed = 1;
+        for (String format : formats.values) {
+            if (!Fixtures.FORMATS.contains(format)) throw new IllegalArgumentException("Unknown format: " + format);
+            for (String size : sizes.values) {
+                templates.put(format + "/" + size,
+                        Fixtures.write(templateDir, format + "-" + size, format, Fixtures.parseSize(size), seed++));
+            }
+        }
+        for (int i = 0; i < watchDirs; i++) {
+            Files.createDirectories(watchDir(i));
+        }
+    }
+
+    public List<NeatGroup> createGroups(){
+        Set<Path> watched = new HashSet<>();
+        for (int i = 0; i < watchDirs; i++) {
+            watched.add(watchDir(i));
+        }
+        List<NeatGroup> created = new ArrayList<>();
+        for (int g = 0; g < groups; g++) {
+            NeatGroup group = new NeatGroup(watched, targetDir(g));
+            for (Rule rule : rules(g)) {
+                group.addRule(rule);
+            }
+            if (depth > 0) {
+                for (Path dir : watched) {
+                    group.setWatchOptions(dir, WatchOptions.recursive(depth, Set.of()));
+                }
+            }
+            created.add(group);
+        }
+        return created;
+    }
+
+    private List<Rule> rules(int group){   // cheap name rule first, then metadata and content as rulesPerGroup grows
+        List<Rule> rules = new ArrayList<>();
+        rules.add(new NameHasRule(tag(group), false, false));
+        rules.add(new FileCategoryRule("Document"));
+        rules.add(new StringContainedRule(Fixtures.NEEDLE, false, false));
+        rules.add(new FileExtensionRule(Set.copyOf(Fixtures.FORMATS)));
+        rules.add(new NameHasRule("^[a-z]+-g\\d+-", false, true));
+        return rules.subList(0, rulesPerGroup);
+    }
+
+    // copies one template into a watch directory under its final name in one rename, like a finished download
+    public Created create() throws IOException {
+        String format = formats.pick(random);
+        Path template = templates.get(format + "/" + sizes.pick(random));
+        Path dir = watchDir(random.nextInt(watchDirs));
+        for (int level = random.nextInt(depth + 1); level > 0; level--) {
+            dir = dir.resolve("sub" + level);
+        }
+        Files.createDirectories(dir);
+
+        double roll = random.nextDouble();
+        int group = random.nextInt(groups);
+        Outcome outcome;
+        String baseName;
+        if (roll < unmatched) {
+            outcome = Outcome.UNMATCHED;
+            baseName = "misc-" + (sequence++);
+        } else if (roll < unmatched + conflicts) {
+            outcome = Outcome.CONFLICT;
+            baseName = "doc" + tag(group) + "g" + ((group + 1) % groups) + "-" + (sequence++);
+        } else {
+            outcome = Outcome.MOVE;
+            String[] recent = recentNames[group];
+            String reused = roll < unmatched + conflicts + collisions ? recent[random.nextInt(recent.length)] : null;
+            baseName = reused != null ? reused : "doc" + tag(group) + (sequence++);
+            recent[random.nextInt(recent.length)] = baseName;
+        }
+
+        Path file = dir.resolve(baseName + "." + format);
+        if (Files.exists(file)) {   // a reused name still waiting in the source folder; a rename would replace it
+            file = dir.resolve("doc" + tag(group) + (sequence++) + "." + format);
+        }
+        Path partial = file.resolveSibling(file.getFileName() + ".tmp");   // skipped by the intake queue while copying
+        Files.copy(template, partial, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        return new Created(file, outcome, group);
+    }
+
+    public Path watchDir(int i){
+        return watchRoot.resolve("w" + i);
+    }
+
+    public Path targetDir(int group){
+        return targetRoot.resolve("g" + group);
+    }
+
+    public int groupOf(Path target){   // from a file's target folder back to the group number, or -1
+        Path parent = target.getParent();
+        if (parent == null || !parent.getParent().equals(targetRoot)) return -1;
+        return Integer.parseInt(parent.getFileName().toString().substring(1));
+    }
+
+    public int getGroups(){
+        return groups;
+    }
+
+    private static String tag(int group){
+        return "-g" + group + "-";
+    }
+
+    // "txt:40,pdf:20" -> values picked with those relative weights
+    private static final class Weighted {
+        final List<String> values = new ArrayList<>();
+        final List<Integer> cumulative = new ArrayList<>();
+        int total;
+
+        Weighted(String spec){
+            for (String part : spec.split(",")) {
+                String[] pair = part.trim().split(":");
+                int weight = pair.length > 1 ? Integer.parseInt(pair[1]) : 1;
+                if (weight <= 0) continue;
+                total += weight;
+                values.add(pair[0].trim());
+                cumulative.add(total);
+            }
+            if (values.isEmpty()) throw new IllegalArgumentException("Empty mix: " + spec);
+        }
+
+        String pick(Random random){
+            int r = random.nextInt(total);
+            for (int i = 0; i < values.size(); i++) {
+                if (r < cumulative.get(i)) return values.get(i);
+            }
+            return values.get(values.size() - 1);
+        }
+    }
+}
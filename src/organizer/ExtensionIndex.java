@@ -0,0 +1,55 @@
+package organizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import organizer.rule.Extensions;
+import organizer.rule.FileContext;
+
+// Maps file extensions to the groups whose rules could accept them,
+// so most files are ruled out with a hash lookup instead of checking every group.
+public class ExtensionIndex {
+    private final Map<String, List<NeatGroup>> byExtension = new HashMap<>();
+    private final List<NeatGroup> anyExtension = new ArrayList<>();  // groups without an extension/category rule
+    private final int maxParts;
+
+    public ExtensionIndex(Collection<NeatGroup> groups){
+        for (NeatGroup group : groups) {
+            Set<String> extensions = group.requiredExtensions();
+            if (extensions == null) {
+                anyExtension.add(group);
+                continue;
+            }
+            for (String ext : extensions) {
+                byExtension.computeIfAbsent(ext, k -> new ArrayList<>()).add(group);
+            }
+        }
+        this.maxParts = Extensions.maxParts(byExtension.keySet());
+    }
+
+    public Collection<NeatGroup> candidates(FileContext file){   // groups that might match, still need group.matches()
+        List<String> suffixes = Extensions.suffixes(file.getLowerName(), maxParts);
+        List<NeatGroup> first = null;
+        Set<NeatGroup> merged = null;   // only needed when more than one suffix hits (".gz" and ".tar.gz")
+
+        for (String suffix : suffixes) {
+            List<NeatGroup> hit = byExtension.get(suffix);
+            if (hit == null) continue;
+            if (first == null) {
+                first = hit;
+            } else {
+                if (merged == null) merged = new LinkedHashSet<>(first);
+                merged.addAll(hit);
+            }
+        }
+
+        if (first == null) return anyExtension;
+        List<NeatGroup> result = new ArrayList<>(anyExtension);
+        result.addAll(merged != null ? merged : first);
+        return result;
+    }
+}
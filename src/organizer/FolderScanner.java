@@ -0,0 +1,176 @@
+package organizer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import organizer.metrics.Histogram;
+import organizer.metrics.Metrics;
+import organizer.scan.DirectorySnapshot;
+import organizer.scan.DirectoryWatcher;
+import organizer.scan.IntakeQueue;
+import organizer.scan.ScanScheduler;
+import organizer.scan.TreeWalker;
+
+// Finds files for the organizer in its watch folders: watcher events plus scheduled reconciliation scans,
+// or polling scans alone when there's no watch service. Changed files wait in the intake until they stop
+// changing and are then submitted. Used by NeatFileApp and by the soak test, so both run the same path.
+public class FolderScanner implements AutoCloseable {
+    // per-folder rescan interval range when no watch service is available; busy folders use the low end
+    private static final long POLL_MIN_MILLIS = Long.getLong("neatfile.scanMinMillis", 2000L);
+    private static final long POLL_MAX_MILLIS = Long.getLong("neatfile.scanMaxMillis", 60_000L);
+    private static final long RECONCILE_INTERVAL_MILLIS = 60_000; // rescan interval while the watcher is running
+    private static final long RECONCILE_MAX_MILLIS = 600_000;     // idle folders back off to this with the watcher
+    private static final long RETRY_MILLIS = 5000;                // a file that failed to move is looked at again after this
+
+    private final NeatFileLogic organizer;
+    private final IntakeQueue intake;   // holds files until they stop changing
+    private final Map<Path, DirectorySnapshot> snapshots = new ConcurrentHashMap<>();   // one per scanned folder
+    private final TreeWalker walker = new TreeWalker(snapshots);
+    private final Map<Path, Histogram> scanTimes = new HashMap<>();   // per watch folder, only used by the scanner thread
+    private final Object scanSignal = new Object();
+    private volatile ScanScheduler scheduler = new ScanScheduler(POLL_MIN_MILLIS, POLL_MAX_MILLIS);
+    private volatile DirectoryWatcher watcher;
+    private volatile boolean running = true;
+
+    public FolderScanner(NeatFileLogic organizer){
+        this.organizer = organizer;
+        this.intake = new IntakeQueue(organizer::submit);
+        Metrics.shared().gauge("Queue", "intake", intake::size);
+        organizer.setRetryListener(this::retryLater);
+    }
+
+    // useWatcher false skips the watch service and polls, as when it's missing
+    public void start(boolean useWatcher){
+        if (useWatcher) {
+            try {
+                DirectoryWatcher started = new DirectoryWatcher(this::handleFile, this::scanDirectory);
+                started.updateDirectories(organizer.getWatchDirectories());
+                started.start();
+                watcher = started;
+                // with the watcher running scans are only a reconciliation pass for missed events
+                scheduler = new ScanScheduler(RECONCILE_INTERVAL_MILLIS, RECONCILE_MAX_MILLIS);
+            } catch (IOException e) {
+                System.out.println("Watch service unavailable, falling back to polling: " + e.getMessage());
+            }
+        }
+
+        Thread scannerThread = new Thread(this::scanLoop, "NeatFile-Scanner");
+        scannerThread.setDaemon(true);
+        scannerThread.start();
+    }
+
+    private void scanLoop(){
+        while (running) {
+            try {
+                Set<Path> watched = organizer.getWatchDirectories();
+                scheduler.updateDirectories(watched);
+                forgetScanTimes(watched);
+                for (Path dir : scheduler.due(System.currentTimeMillis())) {
+                    Histogram scanTime = scanTimes.computeIfAbsent(dir, d -> Metrics.shared().histogram("Scans", d.toString()));
+                    long started = scanTime.startTimer();
+                    boolean changed = scanDirectory(dir);
+                    scanTime.stopTimer(started);
+                    scheduler.scanned(dir, changed, System.currentTimeMillis());
+                }
+
+                synchronized (scanSignal) {
+                    long wait = scheduler.millisUntilNextDue(System.currentTimeMillis());
+                    if (wait > 0 && running) {
+                        scanSignal.wait(wait);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    public void watchDirectoriesChanged(Set<Path> activeDirs){   // after the organizer's groups were replaced
+        snapshots.keySet().removeIf(dir -> activeDirs.stream().noneMatch(dir::startsWith));   // keeps subfolders
+        DirectoryWatcher current = watcher;
+        if (current != null) {
+            current.updateDirectories(activeDirs);
+        }
+        requestScan();  // pick up files already sitting in new watch folders
+    }
+
+    public int intakeSize(){
+        return intake.size();
+    }
+
+    private void forgetScanTimes(Set<Path> watched){   // a removed folder's scan times go from JMX and metrics.json too
+        scanTimes.keySet().removeIf(dir -> {
+            if (watched.contains(dir)) return false;
+            Metrics.shared().remove("Scans", dir.toString());
+            return true;
+        });
+    }
+
+    private boolean scanDirectory(Path dir){   // only hands new or changed files to the organizer, true if there were any
+        try {
+            // subfolders too if a group asked for them, never into target folders; unchanged folders aren't listed
+            return walker.walk(dir, organizer.getWatchOptions(dir), organizer.getTargetDirectories(),
+                    organizer.getRuleVersion(), this::offerChanged);
+        } catch (IOException e) {
+            System.out.println("Failed to scan folder: " + dir + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void offerChanged(Path folder, Map<Path, BasicFileAttributes> files){   // one folder's changes, maybe on a walker thread
+        for (Map.Entry<Path, BasicFileAttributes> entry : files.entrySet()) {
+            System.out.println("[Manual Scan] Checking file: " + entry.getKey());
+            intake.offer(entry.getKey(), entry.getValue(), false);
+        }
+    }
+
+    private void handleFile(Path file){   // single file reported by the watcher
+        scheduler.touched(file.getParent(), System.currentTimeMillis());   // a busy folder gets reconciled sooner
+        DirectorySnapshot snapshot = snapshots.computeIfAbsent(file.getParent(), DirectorySnapshot::new);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attrs.isRegularFile() && snapshot.isChanged(file, attrs, organizer.getRuleVersion())) {
+                intake.offer(file, attrs, true);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to read file: " + file + " - " + e.getMessage());
+        }
+    }
+
+    private void retryLater(Path file){   // forget the file's decision and rescan its folder soon, not when it changes
+        DirectorySnapshot snapshot = snapshots.get(file.getParent());
+        if (snapshot != null) {
+            snapshot.forget(file);
+        }
+        scheduler.retry(file, System.currentTimeMillis() + RETRY_MILLIS);
+        synchronized (scanSignal) {
+            scanSignal.notifyAll();
+        }
+    }
+
+    public void requestScan(){   // wakes the scanner early, e.g. after groups change
+        scheduler.expediteAll();
+        synchronized (scanSignal) {
+            scanSignal.notifyAll();
+        }
+    }
+
+    // stops watching and scanning and drops files still waiting in the intake; the organizer is left running
+    @Override
+    public void close(){
+        running = false;
+        DirectoryWatcher current = watcher;
+        if (current != null) {
+            current.close();
+        }
+        intake.close();
+        walker.close();
+        requestScan();
+    }
+}
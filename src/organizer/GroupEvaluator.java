@@ -0,0 +1,83 @@
+package organizer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import organizer.metrics.Histogram;
+import organizer.metrics.Metrics;
+import organizer.rule.FileContext;
+import organizer.rule.Rule;
+
+// Checks a group's rules cheapest first and stops at the first rejection.
+// Within a cost class the order adapts to what is measured: rules that reject
+// often and run fast move to the front.
+public class GroupEvaluator {
+    private static final long REORDER_EVERY = 256;   // evaluations between order updates
+
+    private static class RuleStats {
+        final Rule rule;
+        final LongAdder calls = new LongAdder();
+        final LongAdder rejections = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final Histogram matchedTime;    // shared by every rule of the same type, for the metrics
+        final Histogram rejectedTime;
+
+        RuleStats(Rule rule){
+            this.rule = rule;
+            String type = rule.getClass().getSimpleName();
+            this.matchedTime = Metrics.shared().histogram("Rules", type + ".matched");
+            this.rejectedTime = Metrics.shared().histogram("Rules", type + ".rejected");
+        }
+
+        double score(){   // expected time spent per rejection, lower goes first
+            long n = calls.sum();
+            if (n == 0) return 0;   // untested rules run early so they get measured
+            double avgNanos = (double) nanos.sum() / n;
+            double rejectRate = (rejections.sum() + 1.0) / (n + 2.0);   // smoothed so one sample doesn't dominate
+            return avgNanos / rejectRate;
+        }
+    }
+
+    private volatile RuleStats[] order;
+    private final AtomicLong evaluations = new AtomicLong();
+
+    public GroupEvaluator(Collection<Rule> rules){
+        RuleStats[] stats = rules.stream().map(RuleStats::new).toArray(RuleStats[]::new);
+        Arrays.sort(stats, Comparator.comparing(s -> s.rule.cost()));
+        this.order = stats;
+    }
+
+    public boolean matches(FileContext file){
+        RuleStats[] current = order;
+        if (current.length == 0) return false;
+
+        boolean matched = true;
+        for (RuleStats stats : current) {
+            long start = System.nanoTime();
+            boolean result = stats.rule.matches(file);
+            long elapsed = System.nanoTime() - start;
+            stats.nanos.add(elapsed);
+            stats.calls.increment();
+            (result ? stats.matchedTime : stats.rejectedTime).record(elapsed);
+            if (!result) {
+                stats.rejections.increment();
+                matched = false;
+                break;
+            }
+        }
+
+        if (evaluations.incrementAndGet() % REORDER_EVERY == 0) {
+            reorder();
+        }
+        return matched;
+    }
+
+    private void reorder(){
+        RuleStats[] next = order.clone();
+        Arrays.sort(next, Comparator.comparing((RuleStats s) -> s.rule.cost())   // never move content reads ahead of name checks
+                .thenComparingDouble(RuleStats::score));
+        order = next;
+    }
+}
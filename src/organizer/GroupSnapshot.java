@@ -0,0 +1,105 @@
+package organizer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import organizer.rule.FileContext;
+import organizer.rule.Rule;
+import organizer.rule.StringContainedRule;
+import organizer.rule.TextMatcher;
+import organizer.scan.WatchOptions;
+
+// Everything processFile needs to know about the groups, compiled once per change and never modified,
+// so workers read it through one volatile field with no locks and no copies.
+public final class GroupSnapshot {
+    public static final GroupSnapshot EMPTY = new GroupSnapshot(List.of(), 0);
+
+    private final List<NeatGroup> groups;             // private copies, the UI's groups can keep changing
+    private final long version;
+    private final WatchIndex watchIndex;
+    private final Map<Path, WatchOptions> watchRoots;    // per watch directory, the widest setting of any group
+    private final Set<Path> targetDirectories;         // never walked into from a watch directory above them
+    private final List<TextMatcher> contentMatchers;  // for the shared NeedleScanner
+    private final Map<NeatGroup, Integer> targetIds;  // conflict table: groups conflict iff their ids differ
+    private final List<Path> targets;                 // target directory for each id
+
+    public GroupSnapshot(Collection<NeatGroup> groups, long version){
+        this.groups = List.copyOf(groups);
+        this.version = version;
+        this.watchIndex = new WatchIndex(this.groups);
+
+        Map<Path, WatchOptions> roots = new HashMap<>();
+        Set<Path> targetDirs = new HashSet<>();
+        List<TextMatcher> matchers = new ArrayList<>();
+        Map<NeatGroup, Integer> ids = new IdentityHashMap<>();   // identity: NeatGroup.hashCode walks all rules
+        Map<Path, Integer> idByTarget = new HashMap<>();
+        List<Path> targetList = new ArrayList<>();
+        for (NeatGroup group : this.groups) {
+            for (Path dir : group.getWatchDirectories()) {
+                roots.merge(dir, group.getWatchOptions(dir), WatchOptions::union);
+            }
+            if (group.getTargetDirectory() != null) {
+                targetDirs.add(group.getTargetDirectory());
+            }
+            for (Rule rule : group.getRules()) {
+                if (rule instanceof StringContainedRule contentRule) {
+                    matchers.add(contentRule.getMatcher());
+                }
+            }
+            Integer id = idByTarget.get(group.getTargetDirectory());
+            if (id == null) {
+                id = targetList.size();
+                idByTarget.put(group.getTargetDirectory(), id);
+                targetList.add(group.getTargetDirectory());
+            }
+            ids.put(group, id);
+        }
+        this.watchRoots = Map.copyOf(roots);
+        this.targetDirectories = Set.copyOf(targetDirs);
+        this.contentMatchers = List.copyOf(matchers);
+        this.targetIds = ids;
+        this.targets = List.copyOf(targetList);
+    }
+
+    public List<NeatGroup> getGroups(){
+        return groups;
+    }
+
+    public long getVersion(){
+        return version;
+    }
+
+    public Collection<NeatGroup> candidates(FileContext file){   // see WatchIndex
+        return watchIndex.candidates(file);
+    }
+
+    public Set<Path> getWatchDirectories(){
+        return watchRoots.keySet();
+    }
+
+    public WatchOptions getWatchOptions(Path directory){
+        return watchRoots.getOrDefault(directory, WatchOptions.TOP_LEVEL);
+    }
+
+    public Set<Path> getTargetDirectories(){
+        return targetDirectories;
+    }
+
+    public List<TextMatcher> getContentMatchers(){
+        return contentMatchers;
+    }
+
+    public int targetId(NeatGroup group){
+        return targetIds.get(group);
+    }
+
+    public Path target(int targetId){
+        return targets.get(targetId);
+    }
+}
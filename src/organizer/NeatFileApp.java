@@ -16,6 +16,7 @@ import javafx.util.Duration;
 
 import java.nio.file.*;             // java imports
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.io.FileWriter;
 import java.io.IOException;
 
@@ -28,6 +29,9 @@ import organizer.rule.LastModifiedRule;
 import organizer.rule.NameHasRule;
 import organizer.rule.Rule;
 import organizer.rule.StringContainedRule;
+import organizer.rule.TextStore;
+import organizer.scan.WatchOptions;        // scan imports
+import organizer.metrics.MetricsReporter;     // metrics imports
 
 public class NeatFileApp extends Application {
 
@@ -37,8 +41,10 @@ public class NeatFileApp extends Application {
     private NeatGroup currentGroup;
     private Set<Path> watchDirs = new HashSet<>();
     private Path configPath = Paths.get("groups.json");
+    private final CompletableFuture<TextStore> textStore = new CompletableFuture<>();   // null once opened if unavailable
     private List<NeatGroup> groups = new ArrayList<>();
-    private volatile boolean running = true;
+    private final FolderScanner scanner = new FolderScanner(organizer);   // watcher, scans and intake for the watch folders
+    private MetricsReporter metricsReporter;
 
     //UI elements
     private ListView<String> watchDirsListView;
@@ -309,6 +315,7 @@ public class NeatFileApp extends Application {
                 Path targetDir = Paths.get(jsonGroup.getString("targetDirectory"));
 
                 NeatGroup group = new NeatGroup(watchDirs, targetDir);
+                readWatchOptions(jsonGroup, group);
                 groups.add(group);
 
                 JSONArray jsonRules = jsonGroup.getJSONArray("rules");
@@ -326,6 +333,26 @@ public class NeatFileApp extends Application {
         // fill up group dropdown
         updateGroupComboBox();
 
+        // reuse text extracted on earlier runs so a restart doesn't re-parse every document; opening can mean
+        // compacting hundreds of MB, so it runs in the background and rules see only misses until it's done
+        Path textStorePath = configPath.resolveSibling("textstore");
+        Thread textStoreOpener = new Thread(() -> {
+            try {
+                TextStore store = TextStore.open(textStorePath);
+                StringContainedRule.setTextStore(store);
+                textStore.complete(store);
+            } catch (IOException e) {
+                System.out.println("Text store unavailable, extracted text won't be saved: " + e.getMessage());
+                textStore.complete(null);
+            }
+        }, "NeatFile-TextStore");
+        textStoreOpener.setDaemon(true);
+        textStoreOpener.start();
+
+        // throughput and latency: live over JMX, and written to metrics.json every interval
+        metricsReporter = new MetricsReporter(configPath.resolveSibling("metrics.json"));
+        metricsReporter.start();
+
         primaryStage.setScene(scene);
         primaryStage.setTitle("NeatFile");
 
@@ -337,7 +364,7 @@ public class NeatFileApp extends Application {
         
         primaryStage.show();
 
-        startManualScanner();
+        scanner.start(true);   // falls back to polling, the watch service wasn't working on my system
         primaryStage.setOnCloseRequest(e -> shutdown());
     }
 
@@ -352,10 +379,31 @@ public class NeatFileApp extends Application {
             watchDirsListView.getItems().addAll(watchDirs.stream().map(Path::toString).toList());
             if (currentGroup != null) {
                 currentGroup.setWatchDirectories(new HashSet<>(watchDirs));
+
+                boolean recursive = false;
+                if (hasSubfolders(path)) {   // nothing to ask about otherwise
+                    Alert subfolders = new Alert(Alert.AlertType.CONFIRMATION, "", ButtonType.YES, ButtonType.NO);
+                    subfolders.setTitle("Subfolders");
+                    subfolders.setHeaderText("Also organize files in subfolders?");
+                    subfolders.setContentText(path.toString());
+                    Optional<ButtonType> answer = subfolders.showAndWait();
+                    recursive = answer.isPresent() && answer.get() == ButtonType.YES;
+                }
+                currentGroup.setWatchOptions(path, recursive
+                        ? WatchOptions.recursive(WatchOptions.UNLIMITED_DEPTH, Set.of())
+                        : WatchOptions.TOP_LEVEL);
             }
         }
     }
 
+    private static boolean hasSubfolders(Path dir) {
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(dir, Files::isDirectory)) {
+            return folders.iterator().hasNext();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     private void createTargetUI(Stage stage) {
         DirectoryChooser chooser = new DirectoryChooser();
         chooser.setTitle("Select Target Directory");
@@ -593,6 +641,10 @@ public class NeatFileApp extends Application {
     
             json.put("targetDirectory", targetDir.toString());
             json.put("rules", group.getRules().stream().map(Rule::toJSON).toList());
+            if (!group.getRecursiveWatchOptions().isEmpty()) {
+                json.put("recursiveWatch", group.getRecursiveWatchOptions().entrySet().stream()
+                        .map(entry -> entry.getValue().toJSON(entry.getKey())).toList());
+            }
             jsonGroups.put(json);
         }
     
@@ -605,7 +657,6 @@ public class NeatFileApp extends Application {
         }
     
         // Reload from JSON
-        organizer.clearGroups();  // clear logic
         groups.clear();           // clear UI state
     
         try {
@@ -620,6 +671,7 @@ public class NeatFileApp extends Application {
                 Path targetDir = Paths.get(obj.getString("targetDirectory"));
     
                 NeatGroup group = new NeatGroup(watchDirs, targetDir);
+                readWatchOptions(obj, group);
     
                 JSONArray jsonRules = obj.getJSONArray("rules");
                 for (int j = 0; j < jsonRules.length(); j++) {
@@ -628,7 +680,6 @@ public class NeatFileApp extends Application {
                 }
     
                 groups.add(group);
-                organizer.addGroup(group);
             }
     
             updateGroupComboBox();
@@ -636,46 +687,37 @@ public class NeatFileApp extends Application {
         } catch (IOException e) {
             System.err.println("Error reloading saved groups: " + e.getMessage());
         }
+
+        // the organizer keeps its own copies, compiled in the background and swapped in at once
+        organizer.replaceGroups(groups).thenAccept(applied -> {
+            scanner.watchDirectoriesChanged(applied.getWatchDirectories());
+        });
     
         finalizeStatus(primaryStage, "Changes finalized!");
     }
     
 
-    private void startManualScanner() {             // had to use this as backup because watch service wasn't working on my system
-        Thread manualScannerThread = new Thread(() -> {
-            while (running) {
-                try {
-                    for (NeatGroup group : groups) {
-                        for (Path dir : group.getWatchDirectories()) {
-                            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-                                for (Path file : stream) {
-                                    if (Files.isRegularFile(file)) {
-                                        System.out.println("[Manual Scan] Checking file: " + file);
-                                        organizer.processFile(file);
-                                    }
-                                }
-                            } catch (IOException e) {
-                                System.out.println("Failed to scan folder: " + dir + " - " + e.getMessage());
-                            }
-                        }
-                    }
-    
-                    Thread.sleep(5000); // 5 seconds between scans
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
-            }
-        });
-    
-        manualScannerThread.setDaemon(true);
-        manualScannerThread.start();
+    private void readWatchOptions(JSONObject json, NeatGroup group) {   // optional, older groups.json files don't have it
+        JSONArray recursive = json.optJSONArray("recursiveWatch");
+        if (recursive == null) return;
+        for (int i = 0; i < recursive.length(); i++) {
+            JSONObject entry = recursive.getJSONObject(i);
+            group.setWatchOptions(Paths.get(entry.getString("path")), WatchOptions.fromJSON(entry));
+        }
     }
-    
 
     private void shutdown() {
-        running = false;
-
+        scanner.close();
+        organizer.shutdown();
+        if (metricsReporter != null) {
+            metricsReporter.close();
+        }
+        textStore.thenAccept(store -> {   // right away, or as soon as a slow open finishes
+            if (store != null) {
+                StringContainedRule.setTextStore(null);
+                store.close();
+            }
+        });
     }
 
     public boolean addGroupToOrganizer(NeatGroup group) {
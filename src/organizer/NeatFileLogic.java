@@ -1,134 +1,337 @@
 package organizer;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import javafx.stage.Stage;
+import organizer.move.MoveExecutor;
+import organizer.move.NameRegistry;
+import organizer.scan.WatchOptions;
+import organizer.metrics.Counter;
+import organizer.metrics.Histogram;
+import organizer.metrics.Metrics;
+import organizer.rule.FileContext;
+import organizer.rule.NeedleScanner;
+import organizer.rule.Rule;
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 
 public class NeatFileLogic {
-    private final Object fileProcessingLock = new Object();  
-    private final Set<NeatGroup> groups = Collections.synchronizedSet(new HashSet<>()); 
+    private static final int WORKER_COUNT = Integer.getInteger("neatfile.workers", Runtime.getRuntime().availableProcessors());
+    private static final int QUEUE_CAPACITY = WORKER_COUNT * 64;  // beyond this submit waits for room
+    private static final String EXECUTOR_MODE = System.getProperty("neatfile.executor", "platform"); // "platform" or "virtual"
+
+    private final ExecutorService workers = createExecutor();
+    // queued plus running files; once they are all taken submit waits rather than running the work itself
+    private final Semaphore capacity = new Semaphore(workers instanceof ThreadPoolExecutor ? WORKER_COUNT + QUEUE_CAPACITY : Integer.MAX_VALUE);
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+    private final NameRegistry targetNames = new NameRegistry();
+    private final MoveExecutor mover = new MoveExecutor();
+    // groups with equal keys conflict or duplicate; a group reaching into subfolders differs from one that doesn't
+    private record GroupKey(Set<Rule> rules, Set<Path> watchDirectories, Map<Path, WatchOptions> watchOptions) {}
+
+    private final Object groupsLock = new Object();
+    private final Map<GroupKey, NeatGroup> groups = new LinkedHashMap<>();  // accepted groups (own copies), guarded by groupsLock
+    private long latestVersion;                                            // guarded by groupsLock
+    private volatile GroupSnapshot snapshot = GroupSnapshot.EMPTY;          // what the workers read, replaced whole
 
     private NeatFileApp app;
+    private volatile BiConsumer<Path, Path> moveListener;   // told about every finished move, e.g. by the soak test
+    private volatile Consumer<Path> retryListener;           // told about files that should be looked at again later
+
+    private final Histogram evaluateTime = Metrics.shared().histogram("Files", "evaluate");   // rules only, not the move
+    private final Counter matchedFiles = Metrics.shared().counter("Files", "matched");
+    private final Counter unmatchedFiles = Metrics.shared().counter("Files", "unmatched");
+    private final Counter conflictedFiles = Metrics.shared().counter("Files", "conflicts");
+
+    public NeatFileLogic(){
+        Metrics.shared().gauge("Queue", "inFlight", inFlight::size);
+        if (workers instanceof ThreadPoolExecutor pool) {
+            Metrics.shared().gauge("Queue", "workers", () -> pool.getQueue().size());
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        if (EXECUTOR_MODE.equals("virtual")) {
+            // one virtual thread per file; heavy extractions are capped inside StringContainedRule instead
+            try {
+                ExecutorService virtual = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                System.out.println("Using virtual threads for file processing");
+                return virtual;
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads need Java 21+, using platform threads instead");
+            }
+        }
+        return new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                workerThreadFactory());   // bounded by capacity, not here: a permit comes back just before its task ends
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "NeatFile-Worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 
     public void setApp(NeatFileApp app) { // allows access to app for status updates
         this.app = app;
     }
 
+    public void setMoveListener(BiConsumer<Path, Path> listener) {   // called with source and final target
+        this.moveListener = listener;
+    }
+
+    // called with a file whose processing didn't finish (failed move, already in flight), so the scanner
+    // can drop its remembered decision instead of skipping the file until it changes
+    public void setRetryListener(Consumer<Path> listener) {
+        this.retryListener = listener;
+    }
+
+    private void retryLater(Path file) {
+        Consumer<Path> listener = retryListener;
+        if (listener != null) {
+            listener.accept(file);
+        }
+    }
+
 
     public boolean addGroup(NeatGroup group){
+        GroupSnapshot next;
+        synchronized (groupsLock) {
+            if (!admit(group)) {
+                return false;
+            }
+            next = new GroupSnapshot(groups.values(), ++latestVersion);
+        }
+        publish(next);
+        return true;
+    }
+
+    // swaps in a whole new group set; the snapshot (indexes, matchers) is compiled off the calling thread
+    public CompletableFuture<GroupSnapshot> replaceGroups(Collection<NeatGroup> newGroups){
+        List<NeatGroup> accepted;
+        long version;
+        synchronized (groupsLock) {
+            groups.clear();
+            for (NeatGroup group : newGroups) {
+                admit(group);
+            }
+            accepted = new ArrayList<>(groups.values());
+            version = ++latestVersion;
+        }
+        return CompletableFuture.supplyAsync(() -> publish(new GroupSnapshot(accepted, version)));
+    }
+
+    private boolean admit(NeatGroup group){   // called with groupsLock held
+        NeatGroup copy = group.copy();   // later UI edits to the group don't reach the organizer until finalized
+        GroupKey key = new GroupKey(copy.getRules(), copy.getWatchDirectories(), copy.getRecursiveWatchOptions());
+        NeatGroup existing = groups.get(key);
 
         // checks for conflicting target directories for same rules and watch directories
-        for(NeatGroup existing : groups){
-        
-            if(existing.getRules().equals(group.getRules()) &&
-            existing.getWatchDirectories().equals(group.getWatchDirectories()) &&
-            !existing.getTargetDirectory().equals(group.getTargetDirectory())){
-            
-            System.out.println("Error: A group with the same rules and watch directories but different target (" + 
-                existing.getTargetDirectory() + " vs. " + group.getTargetDirectory() + ") already exists!");
+        if (existing != null && !Objects.equals(existing.getTargetDirectory(), copy.getTargetDirectory())) {
+            System.out.println("Error: A group with the same rules and watch directories (and subfolder settings) but different target (" + 
+                existing.getTargetDirectory() + " vs. " + copy.getTargetDirectory() + ") already exists!");
             return false;
-            }
         }
 
         // checks for EXACT duplicate group
-        if (groups.contains(group)) {
+        if (existing != null) {
             if (app != null) {
                     Stage stage = (Stage) app.getPrimaryStage();
                     app.finalizeStatus(stage, "Duplicate group not added!");
             }
-            System.out.println("Error: A group with the same rules, watch directories, and target already exists!");
+            System.out.println("Error: A group with the same rules, watch directories, subfolder settings and target already exists!");
             return false;
         }
 
-    
-        groups.add(group);
+        groups.put(key, copy);
         return true;
     }
+
+    private GroupSnapshot publish(GroupSnapshot next){   // an older build finishing late never replaces a newer one
+        synchronized (groupsLock) {
+            if (next.getVersion() > snapshot.getVersion()) {
+                NeedleScanner.install(next.getContentMatchers());
+                snapshot = next;
+            }
+            return snapshot;
+        }
+    }
     
-    public void processFile(Path file){   // processes file according to rules of groups it belongs to
-        synchronized(fileProcessingLock){    // ensures files are processed one at a time
+    // attrs from the scanner's listing, or null to read them later. Waits while the workers are saturated instead
+    // of running the file on the calling thread, so call it from a thread that can block (IntakeQueue's hand-off).
+    public void submit(Path file, BasicFileAttributes attrs){
+        if (!inFlight.add(file)) {
+            retryLater(file);   // already queued or being processed; it may have changed since, so look again after
+            return;
+        }
+        try {
+            capacity.acquire();
+        } catch (InterruptedException e) {
+            inFlight.remove(file);
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                CompletableFuture<Void> moved = CompletableFuture.completedFuture(null);
+                try {
+                    moved = processFile(new FileContext(file, attrs));
+                } catch (RuntimeException e) {
+                    System.out.println("Failed to process " + file + ": " + e.getMessage());
+                    retryLater(file);
+                } finally {
+                    capacity.release();
+                    // stays in flight until a queued move finishes, so a rescan can't move it twice
+                    moved.whenComplete((v, e) -> inFlight.remove(file));
+                }
+            });
+        } catch (RejectedExecutionException e) {   // pool shut down
+            capacity.release();
+            inFlight.remove(file);
+        }
+    }
 
+    private CompletableFuture<Void> processFile(FileContext context){   // completes once the file has been moved, if at all
+        Path file = context.getPath();
         System.out.println("Processing file: " + file);
-    
-        List<NeatGroup> eligibleGroups = new ArrayList<>(); 
-        for(NeatGroup group : groups) {    // check if file is in watch directories + satisfies all group criteria
-            boolean inWatchDir = group.getWatchDirectories().stream().anyMatch(watchDir -> file.startsWith(watchDir));
-            if (inWatchDir && group.matches(file)){
-                eligibleGroups.add(group);     
+
+        // rule evaluation runs unlocked so slow extractions don't block other files
+        GroupSnapshot current = snapshot;
+        long started = evaluateTime.startTimer();
+        int matchedTarget = -1;
+        // one context per file, so its attributes and text are read once for every rule of every group
+        for(NeatGroup group : current.candidates(context)) {    // groups watching this file's folder, check all group criteria
+            int target = current.targetId(group);
+            if (target == matchedTarget) {
+                continue;   // another match with the same target can't change where the file goes
+            }
+            if (group.matches(context)){
+                if (matchedTarget >= 0) {  // multiple matching groups with different targets
+                    System.out.println("Conflict: File "+ file + " matches multiple groups with different targets: " + 
+                        current.target(matchedTarget) + ", " + current.target(target));
+                    evaluateTime.stopTimer(started);
+                    conflictedFiles.increment();
+                    return CompletableFuture.completedFuture(null); // then don't move file
+                }
+                matchedTarget = target;
             }
         }
-        if (eligibleGroups.isEmpty()){  // no match
+        evaluateTime.stopTimer(started);
+        if (matchedTarget < 0){  // no match
             System.out.println("No matching group for: " + file);
-            return;
+            unmatchedFiles.increment();
+            if (context.isUnreadable()) {
+                retryLater(file);   // its content couldn't be read (locked, still being written): look again later
+            }
+            return CompletableFuture.completedFuture(null);
         }
-        if (eligibleGroups.size() > 1 ) {  // multiple matching groups
-            Path target = eligibleGroups.get(0).getTargetDirectory();
-            boolean conflict = eligibleGroups.stream().anyMatch(g -> !g.getTargetDirectory().equals(target));
-            if (conflict) {
-                System.out.println("Conflict: File "+ file + " matches multiple groups with different targets: " + 
-                    eligibleGroups.stream()
-                        .map(g -> g.getTargetDirectory().toString())
-                        .collect(Collectors.joining(", ")));
-                return; // then don't move file
-            }    
-        }
-
-// moves file to target of first matching group                          
-        NeatGroup group = eligibleGroups.get(0);
-        Path targetDir = group.getTargetDirectory();
+        matchedFiles.increment();
+
+        return moveFile(file, current.target(matchedTarget));
+    }
+
+    private CompletableFuture<Void> moveFile(Path file, Path targetDir){   // moves file to target of first matching group
         Path targetFile = targetDir.resolve(file.getFileName());
         
         // check file already in target directory
         if (file.equals(targetFile)) {
             System.out.println("Skipping move — file already in target location: " + file);
-            return;
-        }
-
-        if (!Files.exists(file)) {
-            System.out.println("File no longer exists: " + file);
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
+        // the name is claimed up front, so the move itself needs no lock and two files can't get the same name
+        Path uniqueTargetFile;
         try {
-            Files.createDirectories(targetDir);  // ensure directory exists
+            uniqueTargetFile = targetNames.reserve(targetDir, file.getFileName().toString());
+        } catch (IOException e) {
+            System.out.println("Failed to move " + file + " to " + targetFile + ": " + e.getMessage());
+            retryLater(file);
+            return CompletableFuture.completedFuture(null);
+        }
 
-            String fileName = file.getFileName().toString(); 
-            String baseName = fileName;
-            String extension = "";
+        // the move runs on the mover's lane for this pair of drives, not on the rule worker
+        return mover.move(file, uniqueTargetFile).handle((v, e) -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof FileAlreadyExistsException) {   // another program took the name meanwhile
+                targetNames.release(uniqueTargetFile);   // the next reserve sees the file and skips the name
+                return moveFile(file, targetDir);
+            }
+            if (cause == null) {
+                targetNames.moved(uniqueTargetFile);
+                System.out.println("Moved " + file + " to " + uniqueTargetFile);
+                BiConsumer<Path, Path> listener = moveListener;
+                if (listener != null) {
+                    listener.accept(file, uniqueTargetFile);
+                }
+            } else if (cause instanceof MoveExecutor.SourceNotDeletedException) {
+                // the copy made it, so the name stays taken; not retried, which would only copy it again
+                targetNames.moved(uniqueTargetFile);
+                System.out.println("Copied " + file + " to " + uniqueTargetFile + ", but " + cause.getMessage());
+            } else if (cause instanceof NoSuchFileException && !Files.exists(file)) {   // vanished since it was listed
+                targetNames.release(uniqueTargetFile);
+                System.out.println("File no longer exists: " + file);
+            } else {
+                targetNames.release(uniqueTargetFile);
+                System.out.println("Failed to move " + file + " to " + targetFile + ": " + cause.getMessage());
+                retryLater(file);   // locked, offline drive etc.: try again on a later scan
+            }
+            return CompletableFuture.<Void>completedFuture(null);
+        }).thenCompose(Function.identity());
+    }
 
-            int dotIndex = fileName.lastIndexOf('.');
+    public Set<Path> getWatchDirectories() {   // distinct watch directories across all groups
+        return snapshot.getWatchDirectories();
+    }
 
-            if(dotIndex > 0 && dotIndex < fileName.length() - 1){
-                baseName = fileName.substring(0, dotIndex);
-                extension = fileName.substring(dotIndex); // includes the dot
-            }
+    public WatchOptions getWatchOptions(Path directory) {   // widest setting any group uses for this folder
+        return snapshot.getWatchOptions(directory);
+    }
 
-            Path uniqueTargetFile = targetDir.resolve(fileName);
-            int counter = 1;
-            while (Files.exists(uniqueTargetFile)) {
-                uniqueTargetFile = targetDir.resolve(baseName + "_" + counter + extension);
-                counter++;
-            }
+    public Set<Path> getTargetDirectories() {
+        return snapshot.getTargetDirectories();
+    }
 
-            Files.move(file, uniqueTargetFile);
-            System.out.println("Moved " + file + " to " + uniqueTargetFile);
-            
-        } catch (IOException e) {
-            System.out.println("Failed to move " + file + " to " + targetFile + ": " + e.getMessage());
-            
-        }
+    public long getRuleVersion() {   // lets scanners reuse earlier decisions until the rules change
+        return snapshot.getVersion();
+    }
 
+    public void clearGroups() { 
+        GroupSnapshot next;
+        synchronized (groupsLock) {
+            groups.clear();
+            next = new GroupSnapshot(List.of(), ++latestVersion);
         }
+        publish(next);
     }
 
-    public void clearGroups() { 
-        groups.clear();
+    public void shutdown() {
+        workers.shutdown();
+        mover.shutdown();
     }
 }
 
@@ -1,44 +1,99 @@
 package organizer;
 
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import organizer.rule.FileContext;
 import organizer.rule.Rule;
+import organizer.scan.WatchOptions;
 
 public class NeatGroup {
     private Set<Rule> rules;
     private Set<Path> watchDirectories;
+    private Set<Rule> rulesView;                 // read-only views handed out by the getters
+    private Set<Path> watchDirectoriesView;
     private Path targetDirectory;
+    private Map<Path, WatchOptions> watchOptions = new HashMap<>();   // only watch directories that include subfolders
+    private volatile GroupEvaluator evaluator;   // rebuilt whenever the rules change
 
     public NeatGroup(Set<Path> watchDirectories, Path targetDirectory){
         this.rules = new HashSet<>();
         this.watchDirectories = new HashSet<>(watchDirectories);
         this.targetDirectory = targetDirectory;
+        this.rulesView = Collections.unmodifiableSet(rules);
+        this.watchDirectoriesView = Collections.unmodifiableSet(this.watchDirectories);
+        this.evaluator = new GroupEvaluator(rules);
+    }
+
+    public NeatGroup copy(){   // independent group with the same settings, for the organizer's snapshot
+        NeatGroup copy = new NeatGroup(watchDirectories, targetDirectory);
+        copy.rules.addAll(rules);
+        copy.watchOptions.putAll(watchOptions);
+        copy.evaluator = new GroupEvaluator(copy.rules);
+        return copy;
     }
 
     public void addRule(Rule rule){
         rules.add(rule);  
+        evaluator = new GroupEvaluator(rules);
     }
 
     public void removeRule(Rule rule){
         rules.remove(rule);
+        evaluator = new GroupEvaluator(rules);
     }
 
     public void addWatchDirectory(Path directory){
         watchDirectories.add(directory);
     }
 
+    public WatchOptions getWatchOptions(Path directory){
+        return watchOptions.getOrDefault(directory, WatchOptions.TOP_LEVEL);
+    }
+
+    public void setWatchOptions(Path directory, WatchOptions options){
+        if (options.recursive()) {
+            watchOptions.put(directory, options);
+        } else {
+            watchOptions.remove(directory);
+        }
+    }
+
+    public Map<Path, WatchOptions> getRecursiveWatchOptions(){
+        return Collections.unmodifiableMap(watchOptions);
+    }
+
     public boolean matches(Path file){
-        return !rules.isEmpty() && rules.stream().allMatch(rule -> rule.matches(file));
+        return matches(new FileContext(file));
+    }
+
+    public boolean matches(FileContext file){
+        return evaluator.matches(file);   // cheapest rules first, stops at the first miss
     }
     
 
+    // extensions a file must have to pass this group, taken from its most selective extension/category rule;
+    // null if no rule restricts the extension
+    public Set<String> requiredExtensions(){
+        Set<String> required = null;
+        for (Rule rule : rules) {
+            Set<String> accepted = rule.acceptedExtensions();
+            if (accepted != null && (required == null || accepted.size() < required.size())) {
+                required = accepted;
+            }
+        }
+        return required;
+    }
+
     public Set<Rule> getRules(){
-        return new HashSet<>(rules);
+        return rulesView;
     }
 
     public Set<Path> getWatchDirectories(){
-        return new HashSet<>(watchDirectories);
+        return watchDirectoriesView;
     }
 
     public Path getTargetDirectory(){
@@ -47,6 +102,8 @@ public class NeatGroup {
 
     public void setWatchDirectories(Set<Path> watchDirectories) {
         this.watchDirectories = new HashSet<>(watchDirectories);
+        this.watchDirectoriesView = Collections.unmodifiableSet(this.watchDirectories);
+        this.watchOptions.keySet().retainAll(this.watchDirectories);
     }
 
     // Add setter for targetDirectory
@@ -63,6 +120,7 @@ public class NeatGroup {
 
         return rules.equals(other.rules)
                && watchDirectories.equals(other.watchDirectories) 
+               && watchOptions.equals(other.watchOptions)
                && (targetDirectory == null ? other.targetDirectory == null : targetDirectory.equals(other.targetDirectory));
     }
 
@@ -70,6 +128,7 @@ public class NeatGroup {
     public int hashCode(){
         int result = rules.hashCode();
         result = 31 * result + watchDirectories.hashCode();
+        result = 31 * result + watchOptions.hashCode();
         result = 31 * result + (targetDirectory != null ? targetDirectory.hashCode() : 0);
         return result;
     }
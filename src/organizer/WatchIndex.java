@@ -0,0 +1,104 @@
+package organizer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import organizer.rule.FileContext;
+import organizer.scan.WatchOptions;
+
+// Trie of watch-directory path components leading to the groups that watch each directory,
+// so finding the groups for a file costs one hash lookup per directory level
+// instead of checking every group's watch directories.
+public class WatchIndex {
+    private static class Node {
+        final Map<Path, Node> children = new HashMap<>();
+        final List<NeatGroup> groups = new ArrayList<>();   // groups watching exactly this directory
+        final Map<NeatGroup, WatchOptions> recursive = new IdentityHashMap<>();   // those that include subfolders
+        Path directory;
+        boolean target;                                     // some group moves files here
+        ExtensionIndex extensions;                          // built from groups once the trie is filled
+    }
+
+    private final Map<Path, Node> roots = new HashMap<>();   // keyed by Path.getRoot(), null for relative paths
+
+    public WatchIndex(Collection<NeatGroup> groups){
+        List<Node> watched = new ArrayList<>();
+        for (NeatGroup group : groups) {
+            for (Path dir : group.getWatchDirectories()) {
+                Node node = nodeFor(dir);
+                if (node.groups.isEmpty()) watched.add(node);
+                if (!node.groups.contains(group)) node.groups.add(group);
+                WatchOptions options = group.getWatchOptions(dir);
+                if (options.recursive()) node.recursive.put(group, options);
+            }
+            if (group.getTargetDirectory() != null) {
+                nodeFor(group.getTargetDirectory()).target = true;
+            }
+        }
+        for (Node node : watched) {
+            node.extensions = new ExtensionIndex(node.groups);
+        }
+    }
+
+    private Node nodeFor(Path dir){
+        Node node = roots.computeIfAbsent(dir.getRoot(), k -> new Node());
+        for (Path part : dir) {
+            node = node.children.computeIfAbsent(part, k -> new Node());
+        }
+        node.directory = dir;
+        return node;
+    }
+
+    // groups watching a directory that contains the file and whose extension rules could accept it
+    public Collection<NeatGroup> candidates(FileContext file){
+        Path path = file.getPath();
+        Node node = roots.get(path.getRoot());
+        Collection<NeatGroup> first = null;
+        Set<NeatGroup> merged = null;   // only needed when watch directories are nested
+
+        int parents = path.getNameCount() - 1;
+        for (int i = 0; node != null; i++) {
+            if (node.target) {
+                // inside a target folder: subfolder matches from watch directories above would move files in a loop
+                first = null;
+                merged = null;
+            }
+            if (node.extensions != null && (i == parents || !node.recursive.isEmpty())) {
+                Collection<NeatGroup> hit = node.extensions.candidates(file);
+                if (i < parents) {
+                    hit = inSubfolder(node, hit, path);
+                }
+                if (!hit.isEmpty()) {
+                    if (first == null) {
+                        first = hit;
+                    } else {
+                        if (merged == null) merged = new LinkedHashSet<>(first);
+                        merged.addAll(hit);
+                    }
+                }
+            }
+            if (i >= parents) break;
+            node = node.children.get(path.getName(i));
+        }
+
+        if (merged != null) return merged;
+        return first != null ? first : List.of();
+    }
+
+    private static Collection<NeatGroup> inSubfolder(Node node, Collection<NeatGroup> hit, Path file){
+        List<NeatGroup> covered = new ArrayList<>();
+        for (NeatGroup group : hit) {
+            WatchOptions options = node.recursive.get(group);
+            if (options != null && options.covers(node.directory, file)) {
+                covered.add(group);
+            }
+        }
+        return covered;
+    }
+}
@@ -0,0 +1,37 @@
+package organizer.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic count, e.g. files moved or bytes copied. LongAdder keeps increments cheap under contention.
+public class Counter implements CounterMBean {
+    private final LongAdder count = new LongAdder();
+    private long lastCount;
+    private long lastTick = System.nanoTime();
+    private volatile double perSecond;
+
+    public void increment(){
+        count.increment();
+    }
+
+    public void add(long amount){
+        count.add(amount);
+    }
+
+    @Override
+    public long getCount(){
+        return count.sum();
+    }
+
+    @Override
+    public double getPerSecond(){
+        return perSecond;
+    }
+
+    synchronized void tick(long now){   // called by MetricsReporter once per interval
+        long current = count.sum();
+        double seconds = (now - lastTick) / 1e9;
+        perSecond = seconds > 0 ? (current - lastCount) / seconds : 0;
+        lastCount = current;
+        lastTick = now;
+    }
+}
@@ -0,0 +1,6 @@
+package organizer.metrics;
+
+public interface CounterMBean {
+    long getCount();
+    double getPerSecond();   // over the last reporting interval
+}
@@ -0,0 +1,17 @@
+package organizer.metrics;
+
+import java.util.function.LongSupplier;
+
+// Current value read on demand, e.g. queue depth.
+public class Gauge implements GaugeMBean {
+    private final LongSupplier value;
+
+    Gauge(LongSupplier value){
+        this.value = value;
+    }
+
+    @Override
+    public long getValue(){
+        return value.getAsLong();
+    }
+}
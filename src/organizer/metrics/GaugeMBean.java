@@ -0,0 +1,5 @@
+package organizer.metrics;
+
+public interface GaugeMBean {
+    long getValue();
+}
@@ -0,0 +1,82 @@
+package organizer.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency distribution in power-of-two nanosecond buckets. Recording is a couple of LongAdder increments,
+// so it can sit on the per-rule hot path; percentiles are accurate to within a factor of two.
+public class Histogram implements HistogramMBean {
+    private static final int BUCKETS = 64;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public Histogram(){
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos){
+        if (nanos < 0) nanos = 0;
+        buckets[BUCKETS - Long.numberOfLeadingZeros(nanos | 1)].increment();   // bucket i holds [2^(i-1), 2^i)
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long startTimer(){
+        return System.nanoTime();
+    }
+
+    public void stopTimer(long started){
+        record(System.nanoTime() - started);
+    }
+
+    @Override
+    public long getCount(){
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMicros(){
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public double getP50Micros(){
+        return percentileNanos(0.50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros(){
+        return percentileNanos(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros(){
+        return maxNanos.get() / 1000.0;
+    }
+
+    private long percentileNanos(double p){   // upper edge of the bucket holding the p-th value
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            n += counts[i];
+        }
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(i >= 63 ? Long.MAX_VALUE : 1L << i, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+}
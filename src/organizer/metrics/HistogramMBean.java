@@ -0,0 +1,9 @@
+package organizer.metrics;
+
+public interface HistogramMBean {
+    long getCount();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP99Micros();
+    double getMaxMicros();
+}
@@ -0,0 +1,98 @@
+package organizer.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Named counters, gauges and latency histograms, each also registered as a JMX MBean
+// under "organizer:type=<type>,name=<name>" so they can be watched live in JConsole or VisualVM.
+public final class Metrics {
+    private static final Metrics SHARED = new Metrics();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private Metrics(){}
+
+    public static Metrics shared(){
+        return SHARED;
+    }
+
+    // callers on hot paths should look these up once and keep the reference
+    public Counter counter(String type, String name){
+        return counters.computeIfAbsent(key(type, name), k -> register(type, name, new Counter()));
+    }
+
+    public Histogram histogram(String type, String name){
+        return histograms.computeIfAbsent(key(type, name), k -> register(type, name, new Histogram()));
+    }
+
+    public void gauge(String type, String name, LongSupplier value){   // replaces an earlier gauge of the same name
+        Gauge gauge = new Gauge(value);
+        gauges.put(key(type, name), gauge);
+        register(type, name, gauge);
+    }
+
+    // drops a metric whose subject is gone (e.g. a watch folder that was removed), also from JMX
+    public void remove(String type, String name){
+        String key = key(type, name);
+        counters.remove(key);
+        histograms.remove(key);
+        gauges.remove(key);
+        try {
+            ObjectName objectName = objectName(type, name);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            System.out.println("Failed to unregister metric " + type + "." + name + ": " + e.getMessage());
+        }
+    }
+
+    Map<String, Counter> counters(){
+        return new TreeMap<>(counters);
+    }
+
+    Map<String, Histogram> histograms(){
+        return new TreeMap<>(histograms);
+    }
+
+    Map<String, Gauge> gauges(){
+        return new TreeMap<>(gauges);
+    }
+
+    void tick(long now){
+        for (Counter counter : counters.values()) {
+            counter.tick(now);
+        }
+    }
+
+    private static String key(String type, String name){
+        return type + "." + name;
+    }
+
+    private static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName("organizer:type=" + type + ",name=" + ObjectName.quote(name));
+    }
+
+    private static <T> T register(String type, String name, T bean){
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(bean, objectName);
+        } catch (JMException e) {
+            System.out.println("Failed to register metric " + type + "." + name + ": " + e.getMessage());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,81 @@
+package organizer.metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+
+// Every interval, updates the per-second rates and writes all metrics to a JSON file,
+// so throughput can be looked at after the fact without a JMX client.
+public class MetricsReporter {
+    private static final long INTERVAL_SECONDS = Long.getLong("neatfile.metricsIntervalSeconds", 60L);   // 0 = off
+
+    private final Path file;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "NeatFile-Metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MetricsReporter(Path file){
+        this.file = file;
+    }
+
+    public void start(){
+        if (INTERVAL_SECONDS <= 0) return;
+        timer.scheduleAtFixedRate(this::report, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void close(){
+        timer.shutdownNow();
+    }
+
+    private void report(){
+        Metrics metrics = Metrics.shared();
+        metrics.tick(System.nanoTime());
+
+        JSONObject json = new JSONObject();
+        json.put("time", Instant.now().toString());
+        JSONObject counters = new JSONObject();
+        for (Map.Entry<String, Counter> entry : metrics.counters().entrySet()) {
+            counters.put(entry.getKey(), new JSONObject()
+                    .put("count", entry.getValue().getCount())
+                    .put("perSecond", round(entry.getValue().getPerSecond())));
+        }
+        JSONObject gauges = new JSONObject();
+        for (Map.Entry<String, Gauge> entry : metrics.gauges().entrySet()) {
+            gauges.put(entry.getKey(), entry.getValue().getValue());
+        }
+        JSONObject histograms = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : metrics.histograms().entrySet()) {
+            Histogram h = entry.getValue();
+            histograms.put(entry.getKey(), new JSONObject()
+                    .put("count", h.getCount())
+                    .put("meanMicros", round(h.getMeanMicros()))
+                    .put("p50Micros", round(h.getP50Micros()))
+                    .put("p99Micros", round(h.getP99Micros()))
+                    .put("maxMicros", round(h.getMaxMicros())));
+        }
+        json.put("counters", counters);
+        json.put("gauges", gauges);
+        json.put("histograms", histograms);
+
+        try {   // written next to the real file and renamed, so readers never see half a snapshot
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, json.toString(2));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Failed to write metrics: " + e.getMessage());
+        }
+    }
+
+    private static double round(double value){
+        return Math.round(value * 10) / 10.0;
+    }
+}
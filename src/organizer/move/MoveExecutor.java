@@ -0,0 +1,282 @@
+package organizer.move;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import organizer.metrics.Counter;
+import organizer.metrics.Histogram;
+import organizer.metrics.Metrics;
+
+// Runs moves off the rule workers, one lane per (source drive, target drive) pair. Lanes run side by side,
+// so a 20 GB copy to a network mount doesn't hold up renames on the local disk. Within a lane, moves run
+// in order, and a lane drains everything queued in one go. Same-drive moves are plain renames. Cross-drive
+// moves are copied with FileChannel.transferTo into a hidden partial file, checked, renamed into place,
+// and only then is the source deleted. A partial file left behind by an interrupted copy is resumed if the
+// source still has the size and date noted next to it when the copy started.
+public class MoveExecutor {
+    private static final long CHUNK_BYTES = 64L << 20;            // per transferTo call, also the progress step
+    private static final long PROGRESS_MIN_BYTES = 256L << 20;    // only copies this big report progress
+    private static final int RESUME_CHECK_BYTES = 64 << 10;       // head and tail of a partial file compared with the source
+    private static final int MAX_CACHED_STORES = 1024;
+    private static final String PARTIAL_SUFFIX = ".neatpart";
+    // caps cross-drive copy speed so big copies leave bandwidth for everything else, 0 = unlimited
+    private static final long BYTES_PER_SECOND = Long.getLong("neatfile.moveBytesPerSecond", 0L);
+
+    private static final Counter RENAMED = Metrics.shared().counter("Moves", "renamed");
+    private static final Counter COPIED = Metrics.shared().counter("Moves", "copied");
+    private static final Counter BYTES_COPIED = Metrics.shared().counter("Moves", "bytesCopied");   // cross-drive only
+    private static final Counter BYTES_MOVED = Metrics.shared().counter("Moves", "bytesMoved");     // renames and copies
+    private static final Counter FAILED = Metrics.shared().counter("Moves", "failed");
+    private static final Histogram RENAME_TIME = Metrics.shared().histogram("Moves", "rename");
+    private static final Histogram COPY_TIME = Metrics.shared().histogram("Moves", "copy");
+
+    private record LaneKey(FileStore source, FileStore target) {}
+
+    private record Move(Path source, Path target, CompletableFuture<Void> done) {}
+
+    // the copy is complete and in place under the target name, only the original couldn't be removed;
+    // the target must be kept, not released like the placeholder of a failed move
+    public static class SourceNotDeletedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        SourceNotDeletedException(Path source, IOException cause){
+            super("the original could not be deleted: " + source + " (" + cause.getMessage() + ")", cause);
+        }
+    }
+
+    private class Lane {
+        final boolean sameStore;
+        final Queue<Move> pending = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Lane(LaneKey key){
+            this.sameStore = key.source().equals(key.target());
+        }
+
+        void drain(){
+            do {
+                Move move;
+                while ((move = pending.poll()) != null) {
+                    try {
+                        long started = System.nanoTime();
+                        if (sameStore && rename(move.source(), move.target())) {
+                            RENAME_TIME.stopTimer(started);
+                            RENAMED.increment();
+                        } else {
+                            copyThenDelete(move.source(), move.target());
+                            COPY_TIME.stopTimer(started);
+                            COPIED.increment();
+                        }
+                        countMoved(move.target());
+                        move.done().complete(null);
+                    } catch (IOException | RuntimeException e) {
+                        FAILED.increment();
+                        move.done().completeExceptionally(e);
+                    }
+                }
+                draining.set(false);
+            } while (!pending.isEmpty() && draining.compareAndSet(false, true));   // a move queued while finishing up
+        }
+    }
+
+    private final Map<LaneKey, Lane> lanes = new ConcurrentHashMap<>();
+    private final Map<Path, FileStore> stores = new ConcurrentHashMap<>();   // by directory, getFileStore is slow
+    private final ExecutorService threads = Executors.newCachedThreadPool(moverThreadFactory());
+
+    private static ThreadFactory moverThreadFactory(){
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "NeatFile-Mover-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // queues source to be moved to target (normally a name reserved in NameRegistry); fails with
+    // FileAlreadyExistsException instead of replacing a file that appeared under that name meanwhile
+    public CompletableFuture<Void> move(Path source, Path target){
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        try {
+            LaneKey key = new LaneKey(storeOf(source.toAbsolutePath().getParent()), storeOf(target.toAbsolutePath().getParent()));
+            Lane lane = lanes.computeIfAbsent(key, Lane::new);
+            lane.pending.add(new Move(source, target, done));
+            if (lane.draining.compareAndSet(false, true)) {
+                threads.execute(lane::drain);
+            }
+        } catch (IOException | RejectedExecutionException e) {
+            done.completeExceptionally(e);
+        }
+        return done;
+    }
+
+    public void shutdown(){   // partial copies are kept and resumed the next time the file is moved
+        threads.shutdownNow();
+    }
+
+    private FileStore storeOf(Path directory) throws IOException {
+        FileStore store = stores.get(directory);
+        if (store == null) {
+            if (stores.size() > MAX_CACHED_STORES) stores.clear();
+            store = Files.getFileStore(directory);
+            stores.put(directory, store);
+        }
+        return store;
+    }
+
+    private static void countMoved(Path target){
+        try {
+            BYTES_MOVED.add(Files.size(target));
+        } catch (IOException e) {
+            // already moved on by someone else; the move itself went fine
+        }
+    }
+
+    private static boolean rename(Path source, Path target) throws IOException {   // false if it has to be copied after all
+        try {
+            moveIntoPlace(source, target);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            return false;   // e.g. two bind mounts of different devices reported as one store
+        }
+    }
+
+    private static void copyThenDelete(Path source, Path target) throws IOException {
+        // named after the source, so an interrupted copy of the same file is found again after a restart
+        String id = Integer.toHexString(source.toAbsolutePath().toString().hashCode());
+        Path partial = target.resolveSibling("." + source.getFileName() + "." + id + PARTIAL_SUFFIX);
+        // the source's size and date when the partial was started: an edited source that kept its size, or
+        // had bytes changed only in the middle, must not be finished from the old copy
+        Path stamp = target.resolveSibling("." + source.getFileName() + "." + id + ".source" + PARTIAL_SUFFIX);
+        FileTime sourceModified = Files.getLastModifiedTime(source);
+
+        long size;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            size = in.size();
+            String sourceState = size + " " + sourceModified.toMillis();
+            long done = sourceState.equals(readStamp(stamp)) ? resumableBytes(in, out, size) : 0;
+            if (done == 0) {
+                Files.writeString(stamp, sourceState);
+            }
+            if (done > 0) {
+                System.out.println("Resuming copy of " + source + " at " + done / (1 << 20) + " MB");
+            }
+            out.truncate(done);
+            out.position(done);
+
+            long started = System.nanoTime();
+            long startedAt = done;
+            long nextReport = done + Math.max(size / 10, CHUNK_BYTES);
+            while (done < size) {
+                long n = in.transferTo(done, Math.min(CHUNK_BYTES, size - done), out);
+                if (n <= 0 && in.size() < size) {
+                    throw new IOException("source shrank while copying");
+                }
+                done += n;
+                BYTES_COPIED.add(n);
+                throttle(done - startedAt, started);
+                if (size >= PROGRESS_MIN_BYTES && done >= nextReport && done < size) {
+                    System.out.println("Copying " + source.getFileName() + ": " + done * 100 / size + "% ("
+                            + done / (1 << 20) + " of " + size / (1 << 20) + " MB)");
+                    nextReport += Math.max(size / 10, CHUNK_BYTES);
+                }
+            }
+            out.force(true);   // on disk before the source goes away
+        }
+
+        // verify: the copy is complete and the source didn't change underneath it
+        if (Files.size(partial) != size || Files.size(source) != size
+                || !Files.getLastModifiedTime(source).equals(sourceModified)) {
+            Files.deleteIfExists(partial);
+            Files.deleteIfExists(stamp);
+            throw new IOException("source changed while copying, will retry on the next scan");
+        }
+        Files.setLastModifiedTime(partial, sourceModified);   // keep the date like a rename would
+        moveIntoPlace(partial, target);   // a collision keeps the partial, the retry under a new name resumes it
+        Files.deleteIfExists(stamp);
+        try {
+            Files.delete(source);
+        } catch (NoSuchFileException e) {
+            // someone else removed it meanwhile, which is what we wanted
+        } catch (IOException e) {
+            throw new SourceNotDeletedException(source, e);   // e.g. opened by another program on Windows
+        }
+    }
+
+    // ATOMIC_MOVE replaces an existing target on every platform, so a file someone else wrote under the
+    // reserved name since it was handed out is checked for first
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(target.toString());
+        }
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String readStamp(Path stamp){
+        try {
+            return Files.readString(stamp);
+        } catch (IOException e) {
+            return null;   // none yet, or a partial from before stamps: start over
+        }
+    }
+
+    // bytes of an earlier partial copy of an unchanged source that can be kept: all of it if its head and tail
+    // match the source, otherwise none
+    private static long resumableBytes(FileChannel in, FileChannel out, long size) throws IOException {
+        long have = out.size();
+        if (have == 0 || have > size) return 0;
+
+        int check = (int) Math.min(RESUME_CHECK_BYTES, have);
+        return sameBytes(in, out, 0, check) && sameBytes(in, out, have - check, check) ? have : 0;
+    }
+
+    private static boolean sameBytes(FileChannel in, FileChannel out, long position, int length) throws IOException {
+        ByteBuffer copied = ByteBuffer.allocate(length);
+        ByteBuffer original = ByteBuffer.allocate(length);
+        readFully(out, copied, position);
+        readFully(in, original, position);
+        return copied.flip().equals(original.flip());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) throw new IOException("unexpected end of file");
+        }
+    }
+
+    private static void throttle(long copied, long startedNanos) throws IOException {
+        if (BYTES_PER_SECOND <= 0) return;
+        long expectedNanos = (long) (copied * 1e9 / BYTES_PER_SECOND);
+        long aheadNanos = expectedNanos - (System.nanoTime() - startedNanos);
+        if (aheadNanos > 0) {
+            try {
+                Thread.sleep(aheadNanos / 1_000_000L, (int) (aheadNanos % 1_000_000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("copy interrupted, will resume later");
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package organizer.move;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import organizer.metrics.Histogram;
+import organizer.metrics.Metrics;
+
+// Hands out free names in target directories ("name.pdf", "name_1.pdf", ...). Each directory is listed
+// once and then kept current by our own moves, so a busy folder doesn't cost one exists() check per
+// taken number. A name is claimed by creating a hidden placeholder ".name.pdf.neatname" with CREATE_NEW,
+// so the real name never shows up as an empty file; the scanners skip placeholders like partial copies.
+// Placeholders left behind by a run that didn't finish its moves are deleted when the folder is listed.
+public class NameRegistry {
+    public static final String PLACEHOLDER_SUFFIX = ".neatname";
+    private static final int MAX_DIRECTORIES = 256;   // least recently used folders are listed again when needed
+    private static final int RELIST_SLACK = 1024;      // names a folder may gain on top of doubling before it is listed again
+    private static final long STALE_PLACEHOLDER_MILLIS = 60 * 60 * 1000L;   // older ones aren't any running move's
+    private static final Histogram LOCK_WAIT = Metrics.shared().histogram("Locks", "targetNames.wait");
+
+    private final Map<Path, DirectoryNames> directories = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, DirectoryNames> eldest) {
+            return size() > MAX_DIRECTORIES;
+        }
+    };
+
+    private static class DirectoryNames {
+        final Lock lock = new ReentrantLock();   // not synchronized, so virtual threads don't pin on the file I/O
+        Set<String> taken;                        // null until the folder is first listed
+        final Set<String> reserved = new HashSet<>();   // names with a placeholder of ours, never swept
+        int relistAt;                             // past this many names, list again to forget files deleted since
+        final Map<String, Integer> nextSuffix = new HashMap<>();   // per colliding name, the next _N to try
+    }
+
+    // claims a free name for fileName in directory and returns it; the caller must move onto it and call moved,
+    // or release it
+    public Path reserve(Path directory, String fileName) throws IOException {
+        DirectoryNames names = namesFor(directory);
+        long waitStarted = LOCK_WAIT.startTimer();
+        names.lock.lock();
+        LOCK_WAIT.stopTimer(waitStarted);
+        try {
+            if (names.taken != null && names.taken.size() > names.relistAt) {
+                // we only ever add names, so files the user removed would pile up here on a long run;
+                // listing again once the set has doubled keeps it close to the folder at O(1) amortized cost
+                names.taken = null;
+                names.nextSuffix.clear();
+            }
+            if (names.taken == null) {
+                names.taken = list(directory, names.reserved);   // includes the names of moves still in progress
+                names.relistAt = names.taken.size() * 2 + RELIST_SLACK;
+            }
+            while (true) {
+                Path target = directory.resolve(nextFree(names, fileName));
+                if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;   // written by someone else since the listing; the name is marked taken, try the next one
+                }
+                try {
+                    Files.createFile(placeholder(target));
+                    names.reserved.add(target.getFileName().toString());
+                    return target;
+                } catch (FileAlreadyExistsException e) {
+                    // claimed by another instance since the listing, try the next one
+                }
+            }
+        } finally {
+            names.lock.unlock();
+        }
+    }
+
+    public void moved(Path reserved){   // the file is in place under its name, which stays taken
+        finish(reserved, false);
+    }
+
+    public void release(Path reserved){   // gives a name back after a failed move
+        finish(reserved, true);
+    }
+
+    public static Path placeholder(Path target){
+        return target.resolveSibling("." + target.getFileName() + PLACEHOLDER_SUFFIX);
+    }
+
+    private void finish(Path reserved, boolean free){
+        DirectoryNames names = namesFor(reserved.getParent());
+        names.lock.lock();
+        try {
+            names.reserved.remove(reserved.getFileName().toString());
+            if (free && names.taken != null) {
+                names.taken.remove(reserved.getFileName().toString());
+            }
+            Files.deleteIfExists(placeholder(reserved));
+        } catch (IOException e) {
+            System.out.println("Failed to remove placeholder " + placeholder(reserved) + ": " + e.getMessage());
+        } finally {
+            names.lock.unlock();
+        }
+    }
+
+    private DirectoryNames namesFor(Path directory){
+        synchronized (directories) {
+            return directories.computeIfAbsent(directory, k -> new DirectoryNames());
+        }
+    }
+
+    // names in the folder, plus those placeholders still hold; placeholders that are neither ours nor recent were
+    // left by a run that ended mid-move and are deleted
+    private static Set<String> list(Path directory, Set<String> reserved) throws IOException {
+        Files.createDirectories(directory);  // ensure directory exists
+        Set<String> taken = new HashSet<>(reserved);
+        long staleBefore = System.currentTimeMillis() - STALE_PLACEHOLDER_MILLIS;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                if (!name.startsWith(".") || !name.endsWith(PLACEHOLDER_SUFFIX)) {
+                    taken.add(name);
+                    continue;
+                }
+                String held = name.substring(1, name.length() - PLACEHOLDER_SUFFIX.length());
+                if (reserved.contains(held)) continue;
+                try {
+                    if (Files.getLastModifiedTime(entry, LinkOption.NOFOLLOW_LINKS).toMillis() < staleBefore) {
+                        Files.deleteIfExists(entry);
+                        continue;
+                    }
+                } catch (IOException e) {
+                    // gone already, or not ours to delete; keep the name out of use either way
+                }
+                taken.add(held);
+            }
+        }
+        return taken;
+    }
+
+    private static String nextFree(DirectoryNames names, String fileName){   // marks the returned name as taken
+        if (names.taken.add(fileName)) {
+            return fileName;
+        }
+
+        String baseName = fileName;
+        String extension = "";
+        int dotIndex = fileName.lastIndexOf('.');
+        if(dotIndex > 0 && dotIndex < fileName.length() - 1){
+            baseName = fileName.substring(0, dotIndex);
+            extension = fileName.substring(dotIndex); // includes the dot
+        }
+
+        // continues from the last number handed out, so only numbers taken by others are ever skipped
+        int counter = names.nextSuffix.getOrDefault(fileName, 1);
+        String candidate = baseName + "_" + counter + extension;
+        while (!names.taken.add(candidate)) {
+            counter++;
+            candidate = baseName + "_" + counter + extension;
+        }
+        names.nextSuffix.put(fileName, counter + 1);
+        return candidate;
+    }
+}
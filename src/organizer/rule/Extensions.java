@@ -0,0 +1,58 @@
+package organizer.rule;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+// Helpers for hash-based extension lookups shared by the extension rules and NeatFileLogic.
+public final class Extensions {
+
+    private Extensions(){}
+
+    public static String normalize(String extension){   // " PNG" or ". png" -> ".png"
+        String ext = extension.trim().toLowerCase();
+        if (ext.startsWith(".")) {
+            ext = ext.substring(1).trim();
+        }
+        return "." + ext;
+    }
+
+    public static int maxParts(Collection<String> extensions){   // ".tar.gz" has 2 parts
+        int max = 0;
+        for (String ext : extensions) {
+            max = Math.max(max, parts(ext));
+        }
+        return max;
+    }
+
+    private static int parts(String extension){
+        int count = 0;
+        for (int i = 0; i < extension.length(); i++) {
+            if (extension.charAt(i) == '.') count++;
+        }
+        return count;
+    }
+
+    // suffixes of a file name starting at a dot, shortest first: "a.tar.gz" -> ".gz", ".tar.gz"
+    public static List<String> suffixes(String fileName, int maxParts){
+        List<String> suffixes = new ArrayList<>(maxParts);
+        String lower = fileName.toLowerCase();
+        int end = lower.length();
+        for (int i = 0; i < maxParts; i++) {
+            int dot = lower.lastIndexOf('.', end - 1);
+            if (dot < 0) break;
+            suffixes.add(lower.substring(dot));
+            end = dot;
+        }
+        return suffixes;
+    }
+
+    // same result as checking fileName.endsWith(ext) for every extension, with one hash lookup per suffix
+    public static boolean matchesAny(String fileName, Set<String> extensions, int maxParts){
+        for (String suffix : suffixes(fileName, maxParts)) {
+            if (extensions.contains(suffix)) return true;
+        }
+        return false;
+    }
+}
@@ -4,7 +4,6 @@ import java.nio.file.Path;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
-import java.util.HashSet;
 import org.json.JSONObject;
 
 public class FileCategoryRule implements Rule{
@@ -16,6 +15,8 @@ public class FileCategoryRule implements Rule{
         CATEGORIES.put("Video", Set.of(".mp4",".mov",".wmv",".avi",".mkv",".flv"));
     } 
     
+    private static final int MAX_PARTS = 1;   // no category extension has more than one dot
+    
     private String category;
     
     public FileCategoryRule(String category){
@@ -28,9 +29,17 @@ public class FileCategoryRule implements Rule{
 
     @Override
     public boolean matches(Path file){
-        String fileName = file.getFileName().toString().toLowerCase();
-        Set<String> extensions = CATEGORIES.getOrDefault(category, new HashSet<>());
-        return extensions.stream().anyMatch(fileName::endsWith);
+        return matches(new FileContext(file));
+    }
+
+    @Override
+    public boolean matches(FileContext file){
+        return Extensions.matchesAny(file.getLowerName(), acceptedExtensions(), MAX_PARTS);
+    }
+
+    @Override
+    public Set<String> acceptedExtensions() {
+        return CATEGORIES.getOrDefault(category, Set.of());
     }
 
     @Override
@@ -41,6 +50,11 @@ public class FileCategoryRule implements Rule{
         return json;
     }
 
+    @Override
+    public RuleCost cost(){
+        return RuleCost.NAME;
+    }
+
     @Override
     public boolean equals(Object obj){
         if(obj instanceof FileCategoryRule other){
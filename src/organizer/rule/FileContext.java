@@ -0,0 +1,79 @@
+package organizer.rule;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+// Everything the rules need to know about one file, read at most once per evaluation
+// and shared by every rule of every group that looks at it.
+public class FileContext {
+    private final Path path;
+    private final String lowerName;
+    private BasicFileAttributes attributes;   // from the scanner if it had them, otherwise read on first use
+    private String text;                      // extracted content, filled in by the first content rule
+    private final Map<String, Boolean> verdicts = new HashMap<>();   // per matcher key, for files too big to keep the text
+    private boolean unreadable;               // content couldn't be extracted this time; nothing about it was cached
+
+    public FileContext(Path path){
+        this(path, null);
+    }
+
+    public FileContext(Path path, BasicFileAttributes attributes){
+        this.path = path;
+        this.lowerName = path.getFileName().toString().toLowerCase();
+        this.attributes = attributes;
+    }
+
+    public Path getPath(){
+        return path;
+    }
+
+    public String getLowerName(){
+        return lowerName;
+    }
+
+    public String getExtension(){   // last suffix including the dot, "" if there is none
+        int dot = lowerName.lastIndexOf('.');
+        return dot >= 0 ? lowerName.substring(dot) : "";
+    }
+
+    public synchronized BasicFileAttributes attributes() throws IOException {
+        if (attributes == null) {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        return attributes;
+    }
+
+    public TextCache.Key cacheKey() throws IOException {
+        BasicFileAttributes attrs = attributes();
+        return new TextCache.Key(path, attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    synchronized String getText(){
+        return text;
+    }
+
+    synchronized void setText(String text){
+        this.text = text;
+    }
+
+    synchronized void markUnreadable(){   // content rules see no text, and the file is looked at again later
+        unreadable = true;
+        text = "";
+    }
+
+    public synchronized boolean isUnreadable(){
+        return unreadable;
+    }
+
+    synchronized Boolean getVerdict(String matcherKey){
+        return verdicts.get(matcherKey);
+    }
+
+    synchronized void putVerdicts(Map<String, Boolean> found){
+        verdicts.putAll(found);
+    }
+}
@@ -1,6 +1,7 @@
 package organizer.rule;
 
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Set;
 import java.util.HashSet;
 import org.json.JSONArray;
@@ -8,6 +9,8 @@ import org.json.JSONObject;
 
 public class FileExtensionRule implements Rule{
     private Set<String> extensions;
+    private Set<String> lookup;     // trimmed + lower-cased copy used for matching
+    private int maxParts;           // most dots in any extension, e.g. 2 for ".tar.gz"
 
     public FileExtensionRule(Set<String> extensions){
         this.extensions = new HashSet<>();
@@ -18,6 +21,7 @@ public class FileExtensionRule implements Rule{
                 this.extensions.add("." + ext);
             }
         }
+        compile();
     }
 
     public FileExtensionRule(JSONObject json){
@@ -26,6 +30,15 @@ public class FileExtensionRule implements Rule{
         for(int i = 0; i < extensionsArray.length(); i++){
             extensions.add(extensionsArray.getString(i));
         }
+        compile();
+    }
+
+    private void compile(){
+        this.lookup = new HashSet<>();
+        for (String ext : extensions) {
+            lookup.add(Extensions.normalize(ext));
+        }
+        this.maxParts = Extensions.maxParts(lookup);
     }
 
     @Override
@@ -44,8 +57,22 @@ public class FileExtensionRule implements Rule{
 
     @Override
     public boolean matches(Path file) {
-        String fileName = file.getFileName().toString().toLowerCase();
-        return extensions.stream().anyMatch(fileName::endsWith);
+        return matches(new FileContext(file));
+    }
+
+    @Override
+    public boolean matches(FileContext file) {
+        return Extensions.matchesAny(file.getLowerName(), lookup, maxParts);
+    }
+
+    @Override
+    public Set<String> acceptedExtensions() {
+        return Collections.unmodifiableSet(lookup);
+    }
+
+    @Override
+    public RuleCost cost(){
+        return RuleCost.NAME;
     }
 
     @Override
@@ -1,7 +1,6 @@
 package organizer.rule;
 
 
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
 import java.io.IOException;
@@ -30,16 +29,26 @@ public class LastModifiedRule implements Rule{
 
     @Override
     public boolean matches(Path file){
+        return matches(new FileContext(file));
+    }
+
+    @Override
+    public boolean matches(FileContext file){
         try {
-            FileTime lastAccess = (FileTime) Files.getAttribute(file, "lastModifiedTime");
+            FileTime lastAccess = file.attributes().lastModifiedTime();
             long thresholdTime = System.currentTimeMillis() - (days * 24 * 60 * 60 * 1000);
             return lastAccess.toMillis() < thresholdTime;
         } catch(IOException e) {
-            System.err.println("Error accessing file " + file + ": " + e.getMessage());
+            System.err.println("Error accessing file " + file.getPath() + ": " + e.getMessage());
             return false;
         }
     }
 
+    @Override
+    public RuleCost cost(){
+        return RuleCost.METADATA;
+    }
+
     @Override
     public boolean equals(Object obj){
         if(obj instanceof LastModifiedRule other){
@@ -1,24 +1,26 @@
 package organizer.rule;
 
 import java.nio.file.Path;
-import java.util.regex.Pattern;
 import org.json.JSONObject;
 
 public class NameHasRule implements Rule{
     private String input;
     private boolean caseSensitive;
     private boolean useRegex;
+    private final TextMatcher matcher;   // compiled once from the fields above
 
     public NameHasRule(String input, boolean caseSensitive, boolean useRegex){
         this.input = input;
         this.caseSensitive = caseSensitive;
         this.useRegex = useRegex;
+        this.matcher = TextMatcher.compile(input, caseSensitive, useRegex);
     }
 
     public NameHasRule(JSONObject json) {
         this.input = json.getString("substring");
         this.caseSensitive = json.optBoolean("caseSensitive", false);
         this.useRegex = json.optBoolean("useRegex", false);
+        this.matcher = TextMatcher.compile(input, caseSensitive, useRegex);
 
         
     }
@@ -35,14 +37,17 @@ public class NameHasRule implements Rule{
 
     @Override
     public boolean matches(Path file){
-        String fileName = file.getFileName().toString();
-        if(useRegex){
-            Pattern pattern = caseSensitive ? Pattern.compile(input) : Pattern.compile(input, Pattern.CASE_INSENSITIVE);
-            return pattern.matcher(fileName).find();
-        }
-        String compareName = caseSensitive ? fileName : fileName.toLowerCase();
-        String compareInput = caseSensitive ? input : input.toLowerCase();
-        return compareName.contains(compareInput);
+        return matches(new FileContext(file));
+    }
+
+    @Override
+    public boolean matches(FileContext file){
+        return matcher.find(file.getPath().getFileName().toString());   // original case, the matcher folds if needed
+    }
+
+    @Override
+    public RuleCost cost(){
+        return RuleCost.NAME;
     }
 
     @Override
@@ -0,0 +1,299 @@
+package organizer.rule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Finds every literal StringContainedRule needle in one pass over a file's text (Aho-Corasick),
+// instead of each rule scanning the same text on its own. NeatFileLogic installs a new one
+// whenever the groups change; results are remembered per file so every rule reuses the pass.
+// Text too big to keep is streamed through a Pass instead, which runs the regexes alongside.
+public final class NeedleScanner {
+    private static final int RESULT_CACHE_SIZE = 1024;
+    private static volatile NeedleScanner current = new NeedleScanner(List.of());
+
+    private final Automaton caseSensitive;
+    private final Automaton caseInsensitive;   // built from folded needles, fed lower-cased chars
+    private final Map<String, TextMatcher> regexes = new LinkedHashMap<>();   // by key, only used by a Pass
+    private final Map<TextCache.Key, BitSet[]> results = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TextCache.Key, BitSet[]> eldest) {
+            return size() > RESULT_CACHE_SIZE;
+        }
+    };
+
+    private NeedleScanner(Collection<TextMatcher> matchers){
+        List<String> sensitive = new ArrayList<>();
+        List<String> insensitive = new ArrayList<>();
+        for (TextMatcher matcher : matchers) {
+            if (!matcher.isValid()) continue;
+            if (matcher.isRegex()) {
+                regexes.putIfAbsent(matcher.getKey(), matcher);
+                continue;
+            }
+            if (matcher.getNeedle().isEmpty()) continue;
+            List<String> target = matcher.isCaseSensitive() ? sensitive : insensitive;
+            if (!target.contains(matcher.getNeedle())) {
+                target.add(matcher.getNeedle());
+            }
+        }
+        this.caseSensitive = new Automaton(sensitive);
+        this.caseInsensitive = new Automaton(insensitive);
+    }
+
+    public static void install(Collection<TextMatcher> matchers){
+        current = new NeedleScanner(matchers);
+    }
+
+    public static NeedleScanner current(){
+        return current;
+    }
+
+    // answer for one matcher from the shared pass over this file's text, or null if the matcher isn't covered
+    public Boolean contains(TextCache.Key key, String text, TextMatcher matcher){
+        if (!matcher.isValid() || matcher.isRegex()) return null;
+        Automaton automaton = matcher.isCaseSensitive() ? caseSensitive : caseInsensitive;
+        Integer id = automaton.ids.get(matcher.getNeedle());
+        if (id == null) return null;
+
+        BitSet[] found;
+        synchronized (results) {
+            found = results.get(key);
+        }
+        if (found == null) {
+            found = scan(text);
+            synchronized (results) {
+                results.put(key, found);
+            }
+        }
+        return found[matcher.isCaseSensitive() ? 0 : 1].get(id);
+    }
+
+    private BitSet[] scan(String text){
+        Literals literals = new Literals();
+        literals.feed(text);
+        return new BitSet[] { literals.sensitiveFound, literals.insensitiveFound };
+    }
+
+    // every matcher's verdict from one read of text that arrives in pieces and isn't kept; matchers whose
+    // verdict is already known are left out, and asking is added if it isn't one of the installed matchers
+    Pass newPass(TextMatcher asking, Set<String> known){
+        return new Pass(asking, known);
+    }
+
+    final class Pass implements TextSink {
+        private final Literals literals;   // null if every needle's verdict is already known
+        private final Map<String, StreamingSearch> searches = new LinkedHashMap<>();
+        private final List<StreamingSearch> unmatched = new ArrayList<>();
+
+        private Pass(TextMatcher asking, Set<String> known){
+            literals = allKnown(caseSensitive, true, known) && allKnown(caseInsensitive, false, known) ? null : new Literals();
+            for (TextMatcher regex : regexes.values()) {
+                if (!known.contains(regex.getKey())) {
+                    searches.put(regex.getKey(), new StreamingSearch(regex));
+                }
+            }
+            if (asking.isValid() && !covers(asking)) {   // e.g. a rule used outside the installed groups
+                searches.put(asking.getKey(), new StreamingSearch(asking));
+            }
+            unmatched.addAll(searches.values());
+        }
+
+        @Override
+        public boolean accept(CharSequence text){
+            if (literals != null) {
+                literals.feed(text);   // the automata carry their state across pieces, so no overlap is needed
+            }
+            unmatched.removeIf(search -> !search.accept(text));
+            return !unmatched.isEmpty() || (literals != null && !literals.done());   // stop once everything matched
+        }
+
+        Map<String, Boolean> finish(){   // verdict per matcher key, once the extractor is done
+            Map<String, Boolean> verdicts = new HashMap<>();
+            if (literals != null) {
+                caseSensitive.verdicts(true, literals.sensitiveFound, verdicts);
+                caseInsensitive.verdicts(false, literals.insensitiveFound, verdicts);
+            }
+            for (Map.Entry<String, StreamingSearch> entry : searches.entrySet()) {
+                verdicts.put(entry.getKey(), entry.getValue().finish());
+            }
+            return verdicts;
+        }
+    }
+
+    private boolean covers(TextMatcher matcher){
+        if (matcher.isRegex()) return regexes.containsKey(matcher.getKey());
+        Automaton automaton = matcher.isCaseSensitive() ? caseSensitive : caseInsensitive;
+        return automaton.ids.containsKey(matcher.getNeedle());
+    }
+
+    private static boolean allKnown(Automaton automaton, boolean caseSensitive, Set<String> known){
+        for (String needle : automaton.needles) {
+            if (!known.contains(TextMatcher.key(false, caseSensitive, needle))) return false;
+        }
+        return true;
+    }
+
+    private final class Literals {   // both automata advance together so the text is read once
+        final BitSet sensitiveFound = new BitSet(caseSensitive.needleCount);
+        final BitSet insensitiveFound = new BitSet(caseInsensitive.needleCount);
+        private int sensitiveState;
+        private int insensitiveState;
+        private boolean sensitiveDone = caseSensitive.needleCount == 0;
+        private boolean insensitiveDone = caseInsensitive.needleCount == 0;
+
+        void feed(CharSequence text){
+            for (int i = 0; i < text.length() && !done(); i++) {
+                char c = text.charAt(i);
+                if (!sensitiveDone) {
+                    sensitiveState = caseSensitive.step(sensitiveState, c);
+                    sensitiveDone = caseSensitive.collect(sensitiveState, sensitiveFound);
+                }
+                if (!insensitiveDone) {
+                    insensitiveState = caseInsensitive.step(insensitiveState, Character.toLowerCase(c));
+                    insensitiveDone = caseInsensitive.collect(insensitiveState, insensitiveFound);
+                }
+            }
+        }
+
+        boolean done(){
+            return sensitiveDone && insensitiveDone;
+        }
+    }
+
+    private static final class Automaton {
+        private static final int ASCII = 128;
+
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> needles;   // by id
+        final int needleCount;
+        private final List<int[]> ascii = new ArrayList<>();                 // full transition table for ASCII
+        private final List<Map<Character, Integer>> other = new ArrayList<>(); // trie edges for everything else
+        private final List<int[]> outputs = new ArrayList<>();                // needle ids ending at each state
+        private int[] fail;
+
+        Automaton(List<String> needles){
+            this.needles = List.copyOf(needles);
+            this.needleCount = needles.size();
+            newState();
+            for (String needle : needles) {
+                int state = 0;
+                for (int i = 0; i < needle.length(); i++) {
+                    state = addEdge(state, needle.charAt(i));
+                }
+                int id = ids.size();
+                ids.put(needle, id);
+                int[] out = outputs.get(state);
+                out = Arrays.copyOf(out, out.length + 1);
+                out[out.length - 1] = id;
+                outputs.set(state, out);
+            }
+            buildFailureLinks();
+        }
+
+        private int newState(){
+            int[] row = new int[ASCII];
+            Arrays.fill(row, -1);
+            ascii.add(row);
+            other.add(new HashMap<>());
+            outputs.add(new int[0]);
+            return ascii.size() - 1;
+        }
+
+        private int addEdge(int state, char c){
+            Integer next = edge(state, c);
+            if (next != null && next >= 0) return next;
+            int created = newState();
+            if (c < ASCII) {
+                ascii.get(state)[c] = created;
+            } else {
+                other.get(state).put(c, created);
+            }
+            return created;
+        }
+
+        private Integer edge(int state, char c){
+            if (c < ASCII) {
+                int next = ascii.get(state)[c];
+                return next >= 0 ? next : null;
+            }
+            return other.get(state).get(c);
+        }
+
+        private void buildFailureLinks(){   // BFS; also fills in missing ASCII moves so scanning is one lookup
+            fail = new int[ascii.size()];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            int[] root = ascii.get(0);
+            for (int c = 0; c < ASCII; c++) {
+                if (root[c] < 0) {
+                    root[c] = 0;
+                } else {
+                    queue.add(root[c]);
+                }
+            }
+            for (int next : other.get(0).values()) {
+                queue.add(next);
+            }
+
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                int[] row = ascii.get(state);
+                int[] failRow = ascii.get(fail[state]);
+                for (int c = 0; c < ASCII; c++) {
+                    if (row[c] < 0) {
+                        row[c] = failRow[c];
+                    } else {
+                        fail[row[c]] = failRow[c];
+                        queue.add(row[c]);
+                    }
+                }
+                for (Map.Entry<Character, Integer> entry : other.get(state).entrySet()) {
+                    int next = entry.getValue();
+                    fail[next] = step(fail[state], entry.getKey());
+                    queue.add(next);
+                }
+                int[] inherited = outputs.get(fail[state]);
+                if (inherited.length > 0) {   // a needle that is a suffix of this one also matches here
+                    int[] own = outputs.get(state);
+                    int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+                    System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+                    outputs.set(state, merged);
+                }
+            }
+        }
+
+        int step(int state, char c){
+            if (c < ASCII) {
+                return ascii.get(state)[c];
+            }
+            while (true) {
+                Integer next = other.get(state).get(c);
+                if (next != null) return next;
+                if (state == 0) return 0;
+                state = fail[state];
+            }
+        }
+
+        void verdicts(boolean caseSensitive, BitSet found, Map<String, Boolean> verdicts){
+            for (int id = 0; id < needleCount; id++) {
+                verdicts.put(TextMatcher.key(false, caseSensitive, needles.get(id)), found.get(id));
+            }
+        }
+
+        boolean collect(int state, BitSet found){   // returns true once every needle has been seen
+            int[] out = outputs.get(state);
+            if (out.length == 0) return false;
+            for (int id : out) {
+                found.set(id);
+            }
+            return found.cardinality() == needleCount;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package organizer.rule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.openxml4j.opc.TargetMode;
+
+// Pulls text runs out of .docx and .pptx parts with a StAX reader instead of building
+// XWPFDocument / XMLSlideShow, and stops as soon as the sink has what it needs.
+final class OoxmlExtractor {
+    private static final String SLIDE_TYPE = "application/vnd.openxmlformats-officedocument.presentationml.slide+xml";
+    private static final Pattern SLIDE_NUMBER = Pattern.compile("(\\d+)\\.xml$");
+    // relationship types in transitional documents and in ones saved as "Strict Open XML"
+    private static final List<String> RELATIONSHIP_NAMESPACES = List.of(
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/",
+            "http://purl.oclc.org/ooxml/officeDocument/relationships/");
+    // parts of a Word document with text besides the body, in the order they are searched after it
+    private static final List<String> DOCX_TEXT_PARTS = List.of("header", "footer", "footnotes", "endnotes");
+    private static final XMLInputFactory XML = createFactory();
+
+    private OoxmlExtractor(){}
+
+    private static XMLInputFactory createFactory(){
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);   // documents come from anywhere, no entity tricks
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    static void extractDocx(Path file, TextSink sink) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            // the officeDocument relationship points at word/document.xml
+            PackagePart document = mainPart(pkg);
+            if (document == null || !streamText(document, sink)) return;
+            // headers, footers and notes are parts of their own, linked from the document's relationships
+            for (String kind : DOCX_TEXT_PARTS) {
+                for (PackageRelationship relationship : document.getRelationships()) {
+                    if (relationship.getTargetMode() == TargetMode.EXTERNAL || !isType(relationship, kind)) continue;
+                    PackagePart part = document.getRelatedPart(relationship);
+                    if (part != null && !streamText(part, sink)) return;
+                }
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static PackagePart mainPart(OPCPackage pkg) throws InvalidFormatException {
+        for (String type : List.of(PackageRelationshipTypes.CORE_DOCUMENT, PackageRelationshipTypes.STRICT_CORE_DOCUMENT)) {
+            PackageRelationshipCollection relationships = pkg.getRelationshipsByType(type);
+            if (relationships.size() > 0) {
+                return pkg.getPart(relationships.getRelationship(0));
+            }
+        }
+        return null;
+    }
+
+    private static boolean isType(PackageRelationship relationship, String kind){
+        String type = relationship.getRelationshipType();
+        for (String namespace : RELATIONSHIP_NAMESPACES) {
+            if (type.equals(namespace + kind)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static void extractPptx(Path file, TextSink sink) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            List<PackagePart> slides = new ArrayList<>(pkg.getPartsByContentType(SLIDE_TYPE));
+            slides.sort(Comparator.comparingInt(OoxmlExtractor::slideNumber));   // slide2 before slide10
+            for (PackagePart slide : slides) {
+                if (!streamText(slide, sink)) return;
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static int slideNumber(PackagePart part){
+        Matcher m = SLIDE_NUMBER.matcher(part.getPartName().getName());
+        return m.find() ? Integer.parseInt(m.group(1)) : Integer.MAX_VALUE;
+    }
+
+    // w:t (Word) and a:t (DrawingML) hold the text; paragraph ends become newlines
+    private static boolean streamText(PackagePart part, TextSink sink) throws IOException {
+        try (InputStream in = part.getInputStream()) {
+            XMLStreamReader reader = XML.createXMLStreamReader(in);
+            try {
+                boolean inText = false;
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT -> {
+                            String name = reader.getLocalName();
+                            if (name.equals("t")) {
+                                inText = true;
+                            } else if (name.equals("tab") && !sink.accept("\t")) {
+                                return false;
+                            } else if (name.equals("br") && !sink.accept("\n")) {
+                                return false;
+                            }
+                        }
+                        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                            if (inText && !sink.accept(reader.getText())) {
+                                return false;
+                            }
+                        }
+                        case XMLStreamConstants.END_ELEMENT -> {
+                            String name = reader.getLocalName();
+                            if (name.equals("t")) {
+                                inText = false;
+                            } else if (name.equals("p") && !sink.accept("\n")) {
+                                return false;
+                            }
+                        }
+                        default -> {}
+                    }
+                }
+                return true;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package organizer.rule;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+// Extracts PDF text a few pages at a time so a search can stop as soon as it finds a match.
+final class PdfExtractor {
+    private static final int PAGES_PER_CHUNK = 10;
+    private static final long MAX_MAIN_MEMORY = 16L * 1024 * 1024;   // PDFBox spills to a scratch file past this
+
+    private PdfExtractor(){}
+
+    static void extract(Path file, TextSink sink) throws IOException {
+        try (PDDocument doc = PDDocument.load(file.toFile(), MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY))) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            int pages = doc.getNumberOfPages();
+            for (int start = 1; start <= pages; start += PAGES_PER_CHUNK) {
+                stripper.setStartPage(start);
+                stripper.setEndPage(Math.min(pages, start + PAGES_PER_CHUNK - 1));
+                if (!sink.accept(stripper.getText(doc))) return;
+            }
+        }
+    }
+}
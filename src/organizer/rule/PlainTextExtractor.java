@@ -0,0 +1,43 @@
+package organizer.rule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads a text file in fixed-size chunks and decodes them as it goes, for files too big to load whole.
+final class PlainTextExtractor {
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private PlainTextExtractor(){}
+
+    static void extract(Path file, TextSink sink) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        CharBuffer chars = CharBuffer.allocate(CHUNK_BYTES);   // UTF-8 never decodes to more chars than bytes
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(bytes) < 0;
+                bytes.flip();
+                decoder.decode(bytes, chars, endOfInput);
+                if (endOfInput) {
+                    decoder.flush(chars);
+                }
+                bytes.compact();
+
+                chars.flip();
+                if (!sink.accept(chars)) return;
+                chars.clear();
+            }
+        }
+    }
+}
@@ -1,14 +1,26 @@
 package organizer.rule;
 
 import java.nio.file.Path;
+import java.util.Set;
 import org.json.JSONObject;
 
 public interface Rule {
 
     boolean matches(Path file);  // check if the rule matches a file
+    default boolean matches(FileContext file) {   // same check, reusing what other rules already read about the file
+        return matches(file.getPath());
+    }
     boolean equals(Object obj);  // check if two rules are equal
     int hashCode();             // generate a hash code for the rule
 
+    default RuleCost cost() {   // used to check cheap rules before expensive ones
+        return RuleCost.METADATA;
+    }
+
+    default Set<String> acceptedExtensions() {   // lower-cased extensions this rule can match, or null if any
+        return null;
+    }
+
     JSONObject toJSON();
     static Rule fromJSON(JSONObject json){
         String type = json.getString("type");
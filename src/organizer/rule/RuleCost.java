@@ -0,0 +1,7 @@
+package organizer.rule;
+
+public enum RuleCost {   // rough price of checking a rule, cheapest first
+    NAME,       // only looks at the file name
+    METADATA,   // reads file attributes
+    CONTENT     // opens and reads the file
+}
@@ -0,0 +1,62 @@
+package organizer.rule;
+
+// Searches text as an extractor produces it, so memory use doesn't depend on document size.
+// The end of each searched window is carried into the next one so matches across a boundary are still found.
+// For regexes a little more is kept in front of that as context only: the next search starts after it, so
+// ^, \A and \b aren't fooled by a window that starts mid-line, and lookbehinds still see the real text.
+final class StreamingSearch implements TextSink {
+    private static final int MIN_NEW_CHARS = 8 * 1024;    // batch tiny pieces (like spreadsheet cells) before searching
+    private static final int REGEX_OVERLAP = 64 * 1024;   // longest regex match that can span two windows
+    private static final int REGEX_CONTEXT = 256;         // chars before the searched region kept for lookbehinds
+
+    private final TextMatcher matcher;
+    private final int overlap;
+    private final int context;
+    private final int batch;
+    private final StringBuilder window = new StringBuilder();
+    private int searchFrom;   // matches starting before this were ruled out by an earlier window
+    private int unsearched;   // chars appended since the last search
+    private boolean found;
+
+    StreamingSearch(TextMatcher matcher){
+        this.matcher = matcher;
+        this.overlap = !matcher.isValid() ? 0
+                : matcher.isRegex() ? REGEX_OVERLAP : Math.max(0, matcher.getNeedle().length() - 1);
+        this.context = matcher.isRegex() ? REGEX_CONTEXT : 0;
+        // every search re-reads the overlap, so at least as much new text has to come in between; otherwise a regex
+        // would go over each char about overlap / MIN_NEW_CHARS times
+        this.batch = Math.max(MIN_NEW_CHARS, overlap);
+    }
+
+    @Override
+    public boolean accept(CharSequence text){
+        if (found || !matcher.isValid()) return false;
+        window.append(text);
+        unsearched += text.length();
+        if (unsearched >= batch) {
+            searchWindow(false);
+        }
+        return !found;   // stop at the first hit
+    }
+
+    boolean finish(){   // searches whatever is left once the extractor is done
+        if (!found && matcher.isValid()) {
+            searchWindow(true);
+        }
+        return found;
+    }
+
+    private void searchWindow(boolean endOfInput){
+        unsearched = 0;
+        if (matcher.findIn(window, searchFrom, endOfInput)) {
+            found = true;
+            return;
+        }
+        // a match starting earlier than the overlap would have to be longer than it to still be incomplete;
+        // once anything is cut, searchFrom stays at least `context` in, so index 0 is never read as a text start
+        int nextFrom = Math.max(searchFrom, window.length() - overlap);
+        int cut = Math.max(0, nextFrom - context);
+        window.delete(0, cut);
+        searchFrom = nextFrom - cut;
+    }
+}
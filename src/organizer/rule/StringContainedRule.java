@@ -1,35 +1,50 @@
 package organizer.rule;
 
-import java.io.FileInputStream;
-import java.util.regex.Pattern;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.xslf.usermodel.XMLSlideShow;
-import org.apache.poi.xslf.usermodel.XSLFTextShape;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
 
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import org.json.JSONObject;
+import organizer.metrics.Histogram;
+import organizer.metrics.Metrics;
 
 
 
 public class StringContainedRule implements Rule{
     
     private static final long MAX_FILE_SIZE = 100_000_000L; // change this to look for strings in files bigger than 100MB
+    // files above these sizes are searched as they are read, for every content rule in one pass and with no
+    // size cap, and only the verdicts are kept; smaller files are extracted whole so the text can be shared
+    private static final long STREAM_TEXT_SIZE = 8_000_000L;
+    private static final long STREAM_DOCUMENT_SIZE = 2_000_000L;
+
+    // caps how many files are parsed at once, mainly so virtual-thread mode doesn't open thousands of PDFs together
+    private static final Semaphore EXTRACTION_PERMITS = new Semaphore(
+            Integer.getInteger("neatfile.maxExtractions", Runtime.getRuntime().availableProcessors() * 2));
+
+    private static volatile TextStore textStore;   // optional on-disk copy of extracted text, set by the app
+
+    static {
+        Metrics.shared().gauge("TextCache", "hits", () -> TextCache.shared().getHits());
+        Metrics.shared().gauge("TextCache", "misses", () -> TextCache.shared().getMisses());
+        Metrics.shared().gauge("TextCache", "bytes", () -> TextCache.shared().getBytes());
+    }
 
     private String input;
     private boolean caseSensitive;
     private boolean useRegex;
+    private final TextMatcher matcher;   // compiled once from the fields above
 
     public StringContainedRule(String input, boolean caseSensitive, boolean useRegex){
         this.input = input;
         this.caseSensitive = caseSensitive;
         this.useRegex = useRegex;
+        this.matcher = TextMatcher.compile(input, caseSensitive, useRegex);
     }
     
 
@@ -37,6 +52,7 @@ public class StringContainedRule implements Rule{
         this.input = json.getString("substring");
         this.caseSensitive = json.optBoolean("caseSensitive", false);
         this.useRegex = json.optBoolean("useRegex", false);
+        this.matcher = TextMatcher.compile(input, caseSensitive, useRegex);
     }
 
     @Override
@@ -51,81 +67,190 @@ public class StringContainedRule implements Rule{
 
     @Override
     public boolean matches(Path file){
-        if (file.toFile().length() > MAX_FILE_SIZE) {
-            System.out.println("(Skipped) File too large: " + file.getFileName());
-            return false;
+        return matches(new FileContext(file));
+    }
+
+    @Override
+    public boolean matches(FileContext file){
+        if (!matcher.isValid()) {
+            return false;   // a regex that didn't compile; no point reading the file
         }
         try {
-            String text = extractText(file);
-            if (text == null) {
+            BasicFileAttributes attrs = file.attributes();
+            String name = file.getLowerName();
+            if (attrs.size() > streamThreshold(name)) {
+                return streamedVerdict(file, name);
+            }
+            if (attrs.size() > MAX_FILE_SIZE) {
+                System.out.println("(Skipped) File too large: " + file.getPath().getFileName());
                 return false;
             }
-            if (useRegex) {
-                Pattern pattern = caseSensitive ? Pattern.compile(input) : Pattern.compile(input, Pattern.CASE_INSENSITIVE);
-                return pattern.matcher(text).find();
+            TextCache.Key key = file.cacheKey();
+            String text = file.getText();   // another content rule may already have extracted it
+            if (text == null) {
+                text = cachedText(file.getPath(), key);
+                if (text == null) {   // failed to read; the other content rules on this file won't try again now
+                    file.markUnreadable();
+                    return false;
+                }
+                file.setText(text);
             }
-            String compareText = caseSensitive ? text : text.toLowerCase();
-            String compareInput = caseSensitive ? input : input.toLowerCase();
-            return compareText.contains(compareInput);
+            // literal needles from every group are found in one shared pass over the text
+            Boolean shared = NeedleScanner.current().contains(key, text, matcher);
+            return shared != null ? shared : matcher.find(text);
          } catch (IOException e) {
-            System.err.println("Error processing file" + file + ": " + e.getMessage());
+            System.err.println("Error processing file" + file.getPath() + ": " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
         }
     }
 
-    private String extractText(Path file) throws IOException {
-        String name = file.getFileName().toString().toLowerCase();
-    
-        try {
-            if (name.endsWith(".docx")) {
-                try (FileInputStream fis = new FileInputStream(file.toFile());
-                     XWPFDocument doc = new XWPFDocument(fis);
-                     XWPFWordExtractor extractor = new XWPFWordExtractor(doc)) {
-                    return extractor.getText();
-                }
+    private static long streamThreshold(String name) {
+        if (name.endsWith(".txt")) return STREAM_TEXT_SIZE;
+        if (name.endsWith(".pdf") || name.endsWith(".xlsx") || name.endsWith(".docx") || name.endsWith(".pptx")) {
+            return STREAM_DOCUMENT_SIZE;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    // big logs, long PDFs etc.: the first content rule to look streams the file once for every installed
+    // content rule, and the verdicts go where extracted text would (this file's context, the cache, the store)
+    private boolean streamedVerdict(FileContext file, String name) throws IOException, InterruptedException {
+        String id = matcher.getKey();
+        Boolean verdict = file.getVerdict(id);   // another rule of this evaluation already streamed it
+        if (verdict != null) {
+            return verdict;
+        }
+
+        TextCache.Key key = file.cacheKey();
+        Map<String, Boolean> verdicts = TextCache.shared().getVerdicts(key);
+        TextStore store = textStore;
+        if ((verdicts == null || !verdicts.containsKey(id)) && store != null) {
+            Map<String, Boolean> saved = store.getVerdicts(key);   // streamed on an earlier run
+            if (saved != null) {
+                verdicts = merge(saved, verdicts);
             }
-    
-            if (name.endsWith(".txt")) {
-                return Files.readString(file);
+        }
+        if (verdicts == null || !verdicts.containsKey(id)) {   // new file, or a rule added since it was streamed
+            Map<String, Boolean> found = streamSearch(file.getPath(), name, verdicts == null ? Set.of() : verdicts.keySet());
+            if (found == null) {
+                file.markUnreadable();
+                return false;   // failed to read; not remembered, so the next look tries again
             }
-    
-            if (name.endsWith(".pdf")) {
-                try (PDDocument doc = PDDocument.load(file.toFile())) {
-                    return new PDFTextStripper().getText(doc);
-                }
+            verdicts = merge(verdicts, found);
+            if (store != null) {
+                store.putVerdicts(key, verdicts);
             }
-    
-            if (name.endsWith(".xlsx")) {
-                try (FileInputStream fis = new FileInputStream(file.toFile());
-                     XSSFWorkbook workbook = new XSSFWorkbook(fis)) {
-                    StringBuilder text = new StringBuilder();
-                    workbook.forEach(sheet -> sheet.forEach(row -> row.forEach(cell -> {
-                        switch (cell.getCellType()) {
-                            case STRING -> text.append(cell.getStringCellValue()).append(" ");
-                            case NUMERIC -> text.append(cell.getNumericCellValue()).append(" ");
-                            default -> {}
-                        }
-                    })));
-                    return text.toString();
-                }
+        }
+        TextCache.shared().putVerdicts(key, verdicts);
+        file.putVerdicts(verdicts);
+        return verdicts.getOrDefault(id, false);
+    }
+
+    private static Map<String, Boolean> merge(Map<String, Boolean> older, Map<String, Boolean> newer){
+        Map<String, Boolean> merged = older == null ? new HashMap<>() : new HashMap<>(older);
+        if (newer != null) {
+            merged.putAll(newer);
+        }
+        return merged;
+    }
+
+    private Map<String, Boolean> streamSearch(Path file, String name, Set<String> known) throws InterruptedException {
+        NeedleScanner.Pass pass = NeedleScanner.current().newPass(matcher, known);
+        EXTRACTION_PERMITS.acquire();
+        Histogram timer = extractionTimer(name);
+        long started = timer.startTimer();
+        try {
+            extractorFor(name).extract(file, pass);
+            return pass.finish();
+        } catch (Exception e) {
+            System.err.println("Error extracting from " + name + ": " + e.getMessage());
+            return null;
+        } finally {
+            timer.stopTimer(started);
+            EXTRACTION_PERMITS.release();
+        }
+    }
+
+    private static Histogram extractionTimer(String name) {   // per format, e.g. "Extractors/pdf"
+        return Metrics.shared().histogram("Extractors", name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private String cachedText(Path file, TextCache.Key key) throws IOException, InterruptedException {
+        // several groups often check the same file in one pass, so only the first one parses it
+        String text = TextCache.shared().get(key);
+        if (text != null) {
+            return text;
+        }
+
+        TextStore store = textStore;
+        if (store != null && (text = store.get(key)) != null) {   // parsed on an earlier run
+            TextCache.shared().put(key, text);
+            return text;
+        }
+
+        EXTRACTION_PERMITS.acquire();
+        Histogram timer = extractionTimer(file.getFileName().toString().toLowerCase());
+        long started = timer.startTimer();
+        try {
+            text = extractText(file);
+        } finally {
+            timer.stopTimer(started);
+            EXTRACTION_PERMITS.release();
+        }
+        if (text != null) {   // null: extraction failed, nothing remembered so the next look tries again
+            TextCache.shared().put(key, text);
+            if (store != null) {
+                store.put(key, text);
             }
+        }
+        return text;
+    }
+
+    public TextMatcher getMatcher() {
+        return matcher;
+    }
+
+    public static void setTextStore(TextStore store) {
+        textStore = store;
+    }
+
+    private interface Extractor {   // pushes a file's text into a sink, see the *Extractor classes
+        void extract(Path file, TextSink sink) throws IOException;
+    }
+
+    private static Extractor extractorFor(String name) {
+        if (name.endsWith(".txt")) return PlainTextExtractor::extract;
+        if (name.endsWith(".pdf")) return PdfExtractor::extract;
+        if (name.endsWith(".xlsx")) return XlsxExtractor::extract;
+        if (name.endsWith(".docx")) return OoxmlExtractor::extractDocx;
+        if (name.endsWith(".pptx")) return OoxmlExtractor::extractPptx;
+        return null;
+    }
+
+    // the document's text, "" for types without an extractor, null if reading it failed
+    private String extractText(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase();
     
-            if (name.endsWith(".pptx")) {
-                try (FileInputStream fis = new FileInputStream(file.toFile());
-                     XMLSlideShow ppt = new XMLSlideShow(fis)) {
-                    StringBuilder text = new StringBuilder();
-                    ppt.getSlides().forEach(slide -> slide.getShapes().forEach(shape -> {
-                        if (shape instanceof XSLFTextShape textShape) {
-                            text.append(textShape.getText()).append(" ");
-                        }
-                    }));
-                    return text.toString();
-                }
+        try {
+            // .txt too goes through its extractor, so bad bytes decode the same (replaced) as on the streaming path
+            Extractor extractor = extractorFor(name);
+            if (extractor != null) {
+                StringBuilder text = new StringBuilder();
+                extractor.extract(file, piece -> {
+                    text.append(piece);
+                    return true;
+                });
+                return text.toString();
             }
     
             System.out.println("Unsupported file type: " + name);
         } catch (Exception e) {
+            // a locked or half-written file may read fine later, so this isn't cached like an empty document
             System.err.println("Error extracting from " + name + ": " + e.getMessage());
+            return null;
         }
     
         return "";
@@ -133,6 +258,11 @@ public class StringContainedRule implements Rule{
     
 
 
+    @Override
+    public RuleCost cost(){
+        return RuleCost.CONTENT;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof StringContainedRule other) {
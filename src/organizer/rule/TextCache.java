@@ -0,0 +1,95 @@
+package organizer.rule;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TextCache {
+    private static final TextCache SHARED = new TextCache(
+            Long.getLong("neatfile.textCacheBytes", 64L * 1024 * 1024));   // 64MB default budget
+
+    private static final int MAX_VERDICT_FILES = 4096;
+
+    public record Key(Path file, long size, long lastModified) {}   // a changed file gets a new key
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(16, 0.75f, true); // access order = LRU
+    private long currentBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // for files too big to cache the text of: matcher key -> matched, from one streamed pass over the file
+    private final LinkedHashMap<Key, Map<String, Boolean>> verdicts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Map<String, Boolean>> eldest) {
+            return size() > MAX_VERDICT_FILES;
+        }
+    };
+
+    public TextCache(long maxBytes){
+        this.maxBytes = maxBytes;
+    }
+
+    public static TextCache shared(){   // one cache for every StringContainedRule
+        return SHARED;
+    }
+
+    public synchronized String get(Key key){
+        String text = entries.get(key);
+        if (text == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return text;
+    }
+
+    public synchronized void put(Key key, String text){
+        long size = sizeOf(text);
+        if (size > maxBytes) return;   // would evict everything else, not worth it
+
+        String previous = entries.put(key, text);
+        if (previous != null) {
+            currentBytes -= sizeOf(previous);
+        }
+        currentBytes += size;
+
+        Iterator<Map.Entry<Key, String>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {   // evict least recently used first
+            Map.Entry<Key, String> eldest = it.next();
+            currentBytes -= sizeOf(eldest.getValue());
+            it.remove();
+        }
+    }
+
+    public synchronized Map<String, Boolean> getVerdicts(Key key){
+        return verdicts.get(key);
+    }
+
+    public synchronized void putVerdicts(Key key, Map<String, Boolean> found){
+        verdicts.put(key, found);
+    }
+
+    public synchronized void clear(){
+        entries.clear();
+        verdicts.clear();
+        currentBytes = 0;
+    }
+
+    private static long sizeOf(String text){
+        return 2L * text.length();   // chars are 2 bytes at worst
+    }
+
+    public long getHits(){
+        return hits.get();
+    }
+
+    public long getMisses(){
+        return misses.get();
+    }
+
+    public synchronized long getBytes(){
+        return currentBytes;
+    }
+}
@@ -0,0 +1,127 @@
+package organizer.rule;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// Compiled form of a "find this text" setting, built once when a rule is created
+// so matching a file doesn't recompile patterns or lower-case whole strings.
+public final class TextMatcher {
+    private final Pattern pattern;    // set in regex mode
+    private final String needle;      // set in literal mode, already lower-cased if case-insensitive
+    private final boolean caseSensitive;
+    private final boolean valid;
+    private final String key;
+
+    private TextMatcher(Pattern pattern, String needle, boolean caseSensitive, boolean valid, String key){
+        this.pattern = pattern;
+        this.needle = needle;
+        this.caseSensitive = caseSensitive;
+        this.valid = valid;
+        this.key = key;
+    }
+
+    public static TextMatcher compile(String input, boolean caseSensitive, boolean useRegex){
+        if (useRegex) {
+            try {
+                Pattern pattern = caseSensitive ? Pattern.compile(input) : Pattern.compile(input, Pattern.CASE_INSENSITIVE);
+                return new TextMatcher(pattern, null, caseSensitive, true, key(true, caseSensitive, input));
+            } catch (PatternSyntaxException e) {
+                System.err.println("Invalid regex \"" + input + "\", rule will never match: " + e.getDescription());
+                return new TextMatcher(null, null, caseSensitive, false, key(true, caseSensitive, input));
+            }
+        }
+        String needle = caseSensitive ? input : fold(input);
+        return new TextMatcher(null, needle, caseSensitive, true, key(false, caseSensitive, needle));
+    }
+
+    static String key(boolean regex, boolean caseSensitive, String source){   // e.g. "li:invoice", "rs:^Total \d+"
+        return (regex ? "r" : "l") + (caseSensitive ? "s:" : "i:") + source;
+    }
+
+    // lower-cases char by char, exactly as the text is folded while searching (and in NeedleScanner); String.toLowerCase
+    // would follow the default locale (Turkish dotless i) and special cases like final sigma, so a needle could
+    // end up folded differently from the text it has to match
+    static String fold(String s){
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    public boolean find(CharSequence text){
+        if (!valid) return false;
+        if (pattern != null) {
+            return pattern.matcher(text).find();
+        }
+        return indexOf(text, 0) >= 0;
+    }
+
+    // for text read in pieces: only matches starting at or after from count, with the chars before it visible to
+    // lookbehinds and \b but not taken as the start of the text; a regex hit that more input could undo
+    // (like "end$") only counts at the end
+    public boolean findIn(CharSequence window, int from, boolean endOfInput){
+        if (!valid) return false;
+        if (pattern == null) {
+            return indexOf(window, from) >= 0;
+        }
+        Matcher m = pattern.matcher(window)
+                .region(from, window.length())
+                .useTransparentBounds(true)
+                .useAnchoringBounds(false);
+        return m.find() && (endOfInput || !m.requireEnd());
+    }
+
+    public boolean isValid(){   // false for a regex that failed to compile
+        return valid;
+    }
+
+    public boolean isRegex(){
+        return pattern != null;
+    }
+
+    public Pattern getPattern(){
+        return pattern;
+    }
+
+    public String getNeedle(){
+        return needle;
+    }
+
+    public boolean isCaseSensitive(){
+        return caseSensitive;
+    }
+
+    // what this matcher looks for, as one string; rules with equal keys always agree, so verdicts for a file
+    // can be remembered under it and shared between rules, groups and runs
+    public String getKey(){
+        return key;
+    }
+
+    // literal search that folds case char by char instead of copying the text
+    public int indexOf(CharSequence text, int from){
+        int n = needle.length();
+        if (n == 0) return from <= text.length() ? from : -1;
+        char first = needle.charAt(0);
+        int last = text.length() - n;
+        for (int i = from; i <= last; i++) {
+            if (sameChar(text.charAt(i), first) && regionMatches(text, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(CharSequence text, int offset){
+        for (int j = 1; j < needle.length(); j++) {
+            if (!sameChar(text.charAt(offset + j), needle.charAt(j))) return false;
+        }
+        return true;
+    }
+
+    private boolean sameChar(char c, char folded){
+        if (c == folded) return true;
+        return !caseSensitive && Character.toLowerCase(c) == folded;
+    }
+}
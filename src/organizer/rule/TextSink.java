@@ -0,0 +1,7 @@
+package organizer.rule;
+
+@FunctionalInterface
+interface TextSink {   // receives text from an extractor piece by piece
+
+    boolean accept(CharSequence text);   // return false to stop the extractor early
+}
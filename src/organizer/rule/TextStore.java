@@ -0,0 +1,477 @@
+package organizer.rule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import organizer.metrics.Counter;
+import organizer.metrics.Metrics;
+
+// Extracted text kept on disk between runs.
+// <name>.dat is append-only: [int pathLen][path][int textLen][int compressedLen][deflated text]
+// <name>.idx is memory mapped: a header then fixed 40 byte slots (hash, size, mtime, offset, length, live flag)
+// Files too big to keep the text of get a verdict record instead, same layout under a second hash of the path:
+// the text is "1<matcher key>" or "0<matcher key>" per content rule searched for, separated by NUL.
+// The lock only guards the index; record bytes are read and written with positional I/O outside it, so
+// workers looking up different files don't wait on each other's disk reads.
+// Compaction runs when the store is opened, and again in the background once it fills up or most of it is stale.
+public class TextStore {
+    private static final int MAGIC = 0x4E465453;   // "NFTS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 40;
+    private static final int MIN_INDEX_BYTES = 64 * 1024;
+    private static final long MAX_DATA_BYTES = Long.getLong("neatfile.textStoreBytes", 512L * 1024 * 1024);
+    private static final int COMPACT_EVERY_DAYS = 7;   // also catches entries for files that were moved away
+    private static final String VERDICTS = "\0verdicts";   // appended to the path for the verdict record's hash
+    private static final long MIN_COMPACT_BYTES = 16L * 1024 * 1024;   // stale data worth a compaction while running
+    private static final long FULL_RETRY_MILLIS = 60 * 60 * 1000L;   // a full store that compaction couldn't shrink
+    private static final Counter DROPPED = Metrics.shared().counter("TextStore", "dropped");
+    private static final Counter COMPACTIONS = Metrics.shared().counter("TextStore", "compactions");
+
+    private final Path dataPath;
+    private final Path indexPath;
+    private FileChannel data;
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private final Map<Long, Integer> slots = new HashMap<>();   // path hash -> slot number
+    private int slotCount;
+    private long liveBytes;
+    private long deadBytes;
+    private long dataEnd;   // next free offset in the data file, handed out before the record is written
+    private int generation;   // bumped when compaction swaps the data file; space claimed in an older one is void
+    private boolean compacting;
+    private boolean full;
+    private boolean closed;
+    private long lastCompacted;
+
+    private record Slot(long size, long lastModified, long offset, int length) {}
+
+    private record Kept(long hash, int slotNumber, Slot slot, long newOffset) {}
+
+    private TextStore(Path dataPath, Path indexPath){
+        this.dataPath = dataPath;
+        this.indexPath = indexPath;
+    }
+
+    // opens (or creates) the store, compacting it first if too much of it is stale; that can take a while
+    // on a big store, so callers should do it off the UI thread
+    public static TextStore open(Path basePath) throws IOException {
+        String name = basePath.getFileName().toString();
+        TextStore store = new TextStore(basePath.resolveSibling(name + ".dat"), basePath.resolveSibling(name + ".idx"));
+        store.load();
+        if (store.deadBytes > store.liveBytes || store.data.size() > MAX_DATA_BYTES
+                || today() - store.index.getInt(12) >= COMPACT_EVERY_DAYS) {
+            store.compact();
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        data = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = indexChannel.size() < HEADER_SIZE;
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(indexChannel.size(), MIN_INDEX_BYTES));
+
+        if (fresh || index.getInt(0) != MAGIC || index.getInt(4) != VERSION) {
+            reset();
+            return;
+        }
+
+        slotCount = index.getInt(8);
+        long dataSize = data.size();
+        for (int i = 0; i < slotCount; i++) {
+            int pos = HEADER_SIZE + i * SLOT_SIZE;
+            if (pos + SLOT_SIZE > index.capacity()) {   // header claims more slots than the file holds
+                slotCount = i;
+                break;
+            }
+            int length = index.getInt(pos + 32);
+            if (index.getInt(pos + 36) == 0) {
+                deadBytes += length;
+                continue;
+            }
+            if (index.getLong(pos + 24) + length > dataSize) {   // data never made it to disk
+                index.putInt(pos + 36, 0);
+                continue;
+            }
+            Integer previous = slots.put(index.getLong(pos), i);
+            if (previous != null) {
+                kill(previous);
+            }
+            liveBytes += length;
+        }
+        dataEnd = dataSize;
+    }
+
+    private void reset() throws IOException {
+        data.truncate(0);
+        index.putInt(0, MAGIC);
+        index.putInt(4, VERSION);
+        index.putInt(8, 0);
+        index.putInt(12, today());   // day of the last compaction
+        slots.clear();
+        slotCount = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+        dataEnd = 0;
+    }
+
+    // returns the stored text if it was saved for this exact size and mtime, otherwise null
+    public String get(TextCache.Key key){
+        String path = key.file().toAbsolutePath().toString();
+        return read(key, path, hash(path));
+    }
+
+    public void put(TextCache.Key key, String text){
+        String path = key.file().toAbsolutePath().toString();
+        write(key, path, hash(path), text);
+    }
+
+    // matcher key -> matched, saved for this exact size and mtime, otherwise null
+    public Map<String, Boolean> getVerdicts(TextCache.Key key){
+        String path = key.file().toAbsolutePath().toString();
+        String text = read(key, path, hash(path + VERDICTS));
+        if (text == null) return null;
+        Map<String, Boolean> verdicts = new HashMap<>();
+        for (String entry : text.split("\0")) {
+            if (!entry.isEmpty()) {
+                verdicts.put(entry.substring(1), entry.charAt(0) == '1');
+            }
+        }
+        return verdicts;
+    }
+
+    public void putVerdicts(TextCache.Key key, Map<String, Boolean> verdicts){
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Boolean> entry : verdicts.entrySet()) {
+            text.append(entry.getValue() ? '1' : '0').append(entry.getKey()).append('\0');
+        }
+        String path = key.file().toAbsolutePath().toString();
+        write(key, path, hash(path + VERDICTS), text.toString());
+    }
+
+    private String read(TextCache.Key key, String path, long hash){
+        Slot slot;
+        FileChannel channel;
+        synchronized (this) {
+            Integer slotNumber = slots.get(hash);
+            if (slotNumber == null) return null;
+            slot = readSlot(slotNumber);
+            channel = data;
+        }
+        if (slot.size() != key.size() || slot.lastModified() != key.lastModified()) return null;
+
+        // records are never rewritten in place once their slot is published, so this needs no lock
+        ByteBuffer record = ByteBuffer.allocate(slot.length());
+        try {
+            while (record.hasRemaining()) {
+                if (channel.read(record, slot.offset() + record.position()) < 0) return null;
+            }
+        } catch (IOException e) {
+            return null;   // includes the store being closed underneath us
+        }
+        record.flip();
+        return decode(record, path);
+    }
+
+    private void write(TextCache.Key key, String path, long hash, String text){
+        if (text.isEmpty()) return;   // nothing worth keeping (unsupported type or failed parse)
+
+        ByteBuffer record = encode(path, text);
+
+        int length = record.remaining();
+        long offset;
+        FileChannel channel;
+        int claimedIn;
+        synchronized (this) {   // claim the space, then write it unlocked
+            if (closed) return;
+            if (dataEnd + length > MAX_DATA_BYTES) {
+                DROPPED.increment();
+                if (!full) {
+                    full = true;
+                    System.err.println("Text store is full, not saving text until it is compacted: " + dataPath);
+                }
+                compactIfWorthIt();
+                return;
+            }
+            offset = dataEnd;
+            dataEnd += length;
+            channel = data;
+            claimedIn = generation;
+        }
+
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                if (claimedIn == generation) {   // otherwise compaction closed the old file underneath us
+                    System.err.println("Failed to save text for " + path + ": " + e.getMessage());
+                    deadBytes += length;   // the claimed space is never referenced
+                }
+            }
+            return;
+        }
+
+        synchronized (this) {   // the slot goes in only after the record is on its way to disk
+            if (claimedIn != generation) {   // written to the data file compaction just replaced
+                DROPPED.increment();
+                return;
+            }
+            try {
+                addSlot(hash, key.size(), key.lastModified(), offset, length);
+            } catch (IOException e) {
+                System.err.println("Failed to save text for " + path + ": " + e.getMessage());
+            }
+            compactIfWorthIt();
+        }
+    }
+
+    private void addSlot(long hash, long size, long lastModified, long offset, int length) throws IOException {
+        int pos = HEADER_SIZE + slotCount * SLOT_SIZE;
+        if (pos + SLOT_SIZE > index.capacity()) {
+            index.force();
+            index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, index.capacity() * 2L);
+        }
+        index.putLong(pos, hash);
+        index.putLong(pos + 8, size);
+        index.putLong(pos + 16, lastModified);
+        index.putLong(pos + 24, offset);
+        index.putInt(pos + 32, length);
+        index.putInt(pos + 36, 1);
+
+        Integer previous = slots.put(hash, slotCount);
+        if (previous != null) {
+            kill(previous);   // older text for the same path is now stale
+        }
+        liveBytes += length;
+        slotCount++;
+        index.putInt(8, slotCount);   // publish the slot only after it is fully written
+    }
+
+    private void kill(int slotNumber){
+        int pos = HEADER_SIZE + slotNumber * SLOT_SIZE;
+        int length = index.getInt(pos + 32);
+        index.putInt(pos + 36, 0);
+        liveBytes -= length;
+        deadBytes += length;
+    }
+
+    private Slot readSlot(int slotNumber){
+        int pos = HEADER_SIZE + slotNumber * SLOT_SIZE;
+        return new Slot(index.getLong(pos + 8), index.getLong(pos + 16), index.getLong(pos + 24), index.getInt(pos + 32));
+    }
+
+    // starts a background compaction once most of the data is stale, or the store is full and hasn't been
+    // compacted for a while (if nothing could be dropped last time, trying again right away won't help)
+    private void compactIfWorthIt(){
+        if (compacting || closed) return;
+        boolean stale = deadBytes > liveBytes && deadBytes > MIN_COMPACT_BYTES;
+        if (!stale && !(full && System.currentTimeMillis() - lastCompacted > FULL_RETRY_MILLIS)) return;
+        compacting = true;
+        Thread thread = new Thread(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("Failed to compact text store: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                    lastCompacted = System.currentTimeMillis();
+                }
+            }
+        }, "NeatFile-TextStoreCompaction");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // rewrites only entries whose file still exists unchanged. The bulk of the copying runs without the lock, so
+    // lookups and saves go on meanwhile; records saved since are copied under the lock right before the new file
+    // is swapped in, and saves still being written then are dropped (their space was claimed in the old file)
+    private void compact() throws IOException {
+        System.out.println("Compacting text store: " + dataPath);
+        COMPACTIONS.increment();
+        List<Kept> snapshot = new ArrayList<>();
+        FileChannel source;
+        int snapshotSlots;
+        synchronized (this) {
+            for (Map.Entry<Long, Integer> entry : slots.entrySet()) {
+                snapshot.add(new Kept(entry.getKey(), entry.getValue(), readSlot(entry.getValue()), -1));
+            }
+            source = data;
+            snapshotSlots = slotCount;
+        }
+
+        Path tempData = dataPath.resolveSibling(dataPath.getFileName() + ".tmp");
+        FileChannel out = FileChannel.open(tempData, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            List<Kept> keep = new ArrayList<>();
+            for (Kept kept : snapshot) {
+                ByteBuffer record = readRecord(source, kept.slot());
+                Path file;
+                try {
+                    file = Path.of(readPath(record.duplicate()));
+                } catch (RuntimeException e) {
+                    continue;   // corrupt record
+                }
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attrs.size() != kept.slot().size() || attrs.lastModifiedTime().toMillis() != kept.slot().lastModified()) {
+                        continue;
+                    }
+                } catch (IOException e) {
+                    continue;   // file moved or deleted, drop it
+                }
+                keep.add(new Kept(kept.hash(), kept.slotNumber(), kept.slot(), out.position()));
+                writeFully(out, record);
+            }
+
+            synchronized (this) {
+                if (closed) return;
+                keep.removeIf(kept -> !Integer.valueOf(kept.slotNumber()).equals(slots.get(kept.hash())));   // replaced since
+                List<Kept> added = new ArrayList<>();
+                for (int i = snapshotSlots; i < slotCount; i++) {
+                    long hash = index.getLong(HEADER_SIZE + i * SLOT_SIZE);
+                    if (Integer.valueOf(i).equals(slots.get(hash))) {
+                        Slot slot = readSlot(i);
+                        added.add(new Kept(hash, i, slot, out.position()));
+                        writeFully(out, readRecord(data, slot));
+                    }
+                }
+                keep.addAll(added);
+                out.close();   // before the move, Windows can't replace an open file
+
+                data.close();
+                try {
+                    Files.move(tempData, dataPath, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    data = FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+                generation++;
+
+                // the index stays mapped (Windows can't replace a mapped file), so it is rewritten in place
+                slots.clear();
+                slotCount = 0;
+                liveBytes = 0;
+                deadBytes = 0;
+                for (Kept kept : keep) {
+                    Slot slot = kept.slot();
+                    addSlot(kept.hash(), slot.size(), slot.lastModified(), kept.newOffset(), slot.length());
+                }
+                dataEnd = Files.size(dataPath);   // records dropped as replaced after they were copied stay as dead space
+                deadBytes = dataEnd - liveBytes;
+                full = false;
+                index.putInt(12, today());
+                index.force();
+            }
+        } finally {
+            out.close();
+            Files.deleteIfExists(tempData);
+        }
+    }
+
+    private static ByteBuffer readRecord(FileChannel channel, Slot slot) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(slot.length());
+        while (record.hasRemaining()) {
+            if (channel.read(record, slot.offset() + record.position()) < 0) throw new IOException("record past the end of the data file");
+        }
+        record.flip();
+        return record;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            out.write(record);
+        }
+    }
+
+    private static int today(){
+        return (int) (System.currentTimeMillis() / (24L * 60 * 60 * 1000));
+    }
+
+    public synchronized void close(){
+        closed = true;   // a compaction still copying gives up
+        try {
+            index.force();
+            data.force(true);
+            data.close();
+            indexChannel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close text store: " + e.getMessage());
+        }
+    }
+
+    private static ByteBuffer encode(String path, String text){
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(textBytes);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, textBytes.length / 4));
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            compressed.write(chunk, 0, n);
+        }
+        deflater.end();
+
+        ByteBuffer record = ByteBuffer.allocate(12 + pathBytes.length + compressed.size());
+        record.putInt(pathBytes.length).put(pathBytes);
+        record.putInt(textBytes.length).putInt(compressed.size()).put(compressed.toByteArray());
+        record.flip();
+        return record;
+    }
+
+    private static String readPath(ByteBuffer record){
+        int length = record.getInt();
+        if (length < 0 || length > record.remaining()) throw new IllegalArgumentException("bad path length " + length);
+        byte[] pathBytes = new byte[length];
+        record.get(pathBytes);
+        return new String(pathBytes, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(ByteBuffer record, String expectedPath){
+        try {
+            if (!readPath(record).equals(expectedPath)) return null;   // hash collision
+            byte[] textBytes = new byte[record.getInt()];
+            byte[] compressed = new byte[record.getInt()];
+            record.get(compressed);
+
+            Inflater inflater = new Inflater();
+            inflater.setInput(compressed);
+            int n = inflater.inflate(textBytes);
+            inflater.end();
+            if (n != textBytes.length) return null;
+            return new String(textBytes, StandardCharsets.UTF_8);
+        } catch (DataFormatException | RuntimeException e) {
+            return null;   // corrupt record, treat as a miss
+        }
+    }
+
+    private static long hash(String path){   // 64-bit FNV-1a
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            h ^= path.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
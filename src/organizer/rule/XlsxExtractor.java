@@ -0,0 +1,78 @@
+package organizer.rule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import javax.xml.parsers.ParserConfigurationException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+// Streams cell values out of an .xlsx with POI's SAX event model instead of building an XSSFWorkbook,
+// so memory stays flat on big sheets and a search can stop at the first match.
+final class XlsxExtractor {
+
+    private static final class StopExtraction extends RuntimeException {   // unwinds the SAX parser early
+        private static final long serialVersionUID = 1L;
+
+        StopExtraction(){
+            super(null, null, false, false);
+        }
+    }
+
+    private XlsxExtractor(){}
+
+    static void extract(Path file, TextSink sink) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            DataFormatter formatter = new DataFormatter();
+            XSSFSheetXMLHandler.SheetContentsHandler cells = new CellHandler(sink);
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    // no styles table: numbers come through as stored, which avoids parsing styles.xml
+                    parser.setContentHandler(new XSSFSheetXMLHandler(null, strings, cells, formatter, false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+        } catch (StopExtraction e) {
+            // sink has what it needs
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static final class CellHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final TextSink sink;
+
+        CellHandler(TextSink sink){
+            this.sink = sink;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment){
+            if (formattedValue == null || formattedValue.isEmpty()) return;
+            if (!sink.accept(formattedValue) || !sink.accept(" ")) {
+                throw new StopExtraction();
+            }
+        }
+
+        @Override
+        public void startRow(int rowNum){}
+
+        @Override
+        public void endRow(int rowNum){}
+    }
+}
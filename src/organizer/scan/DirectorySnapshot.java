@@ -0,0 +1,96 @@
+package organizer.scan;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public class DirectorySnapshot {
+    // unchanged files are still re-checked this often so time based rules (LastModifiedRule) eventually fire
+    private static final long MAX_DECISION_AGE_MILLIS = 60 * 60 * 1000;
+    // a folder changed this close to our listing might change again within the same mtime tick (2 s on FAT)
+    private static final long MTIME_SLACK_MILLIS = 2000;
+
+    private record Entry(Object fileKey, long size, long lastModified, long ruleVersion, long checkedAt) {}
+
+    private final Path directory;
+    private final Map<Path, Entry> entries = new HashMap<>();
+    private long listedModified = Long.MIN_VALUE;   // the folder's own mtime when it was last listed
+    private long listedAt;
+    private long listedVersion;
+    private List<Path> subfolders = List.of();
+
+    public DirectorySnapshot(Path directory){
+        this.directory = directory;
+    }
+
+    public Path getDirectory(){
+        return directory;
+    }
+
+    // takes a listing of the directory (from TreeWalker) and returns only regular files that are new, changed,
+    // or checked under an older rule set, with the attributes read for the check so the rules don't stat them again
+    public synchronized Map<Path, BasicFileAttributes> changedFiles(Map<Path, BasicFileAttributes> listing, long ruleVersion){
+        Map<Path, BasicFileAttributes> changed = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, BasicFileAttributes> entry : listing.entrySet()) {
+            if (record(entry.getKey(), entry.getValue(), ruleVersion, now)) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        entries.keySet().retainAll(listing.keySet());  // forget files that were moved or deleted
+        return changed;
+    }
+
+    // the subfolders from the last listing if the folder itself hasn't changed since (adding, removing or
+    // renaming an entry updates a folder's mtime), or null if it has to be listed again
+    public synchronized List<Path> unchangedSubfolders(long folderModified, long ruleVersion, long now){
+        boolean unchanged = folderModified == listedModified
+                && ruleVersion == listedVersion
+                && listedAt - folderModified > MTIME_SLACK_MILLIS
+                && now - listedAt < MAX_DECISION_AGE_MILLIS;
+        return unchanged ? subfolders : null;
+    }
+
+    public synchronized List<Path> getSubfolders(){   // as of the last listing
+        return subfolders;
+    }
+
+    public synchronized void listed(long folderModified, long startedAt, long ruleVersion, List<Path> subfolders){
+        this.listedModified = folderModified;
+        this.listedAt = startedAt;
+        this.listedVersion = ruleVersion;
+        this.subfolders = List.copyOf(subfolders);
+    }
+
+    // single-file version for watcher events; returns true if the file should be processed
+    public synchronized boolean isChanged(Path file, BasicFileAttributes attrs, long ruleVersion){
+        return record(file, attrs, ruleVersion, System.currentTimeMillis());
+    }
+
+    // drops the decision for a file whose processing didn't finish (failed move, already in flight), so the next
+    // scan hands it over again; the folder is listed again too, since its mtime won't have changed
+    public synchronized void forget(Path file){
+        entries.remove(file);
+        listedModified = Long.MIN_VALUE;
+    }
+
+    private boolean record(Path file, BasicFileAttributes attrs, long ruleVersion, long now){
+        Entry previous = entries.get(file);
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        if (previous != null
+                && Objects.equals(previous.fileKey(), attrs.fileKey())
+                && previous.size() == attrs.size()
+                && previous.lastModified() == lastModified
+                && previous.ruleVersion() == ruleVersion
+                && now - previous.checkedAt() < MAX_DECISION_AGE_MILLIS) {
+            return false;   // same file, same rules: reuse the last decision
+        }
+        entries.put(file, new Entry(attrs.fileKey(), attrs.size(), lastModified, ruleVersion, now));
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package organizer.scan;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+public class DirectoryWatcher {
+    private static final long COALESCE_MILLIS = 100; // wait this long for more events before handing files off
+    private static final long MAX_BATCH_MILLIS = 1000;  // but hand off at least this often while events keep coming
+
+    private final WatchService watchService;
+    private final Map<Path, WatchKey> keys = new HashMap<>();   // one registration per distinct watch directory
+    private final Consumer<Path> fileHandler;      // called once per changed file
+    private final Consumer<Path> rescanHandler;    // called with a directory when its events overflowed
+    private volatile boolean running = true;
+
+    public DirectoryWatcher(Consumer<Path> fileHandler, Consumer<Path> rescanHandler) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.fileHandler = fileHandler;
+        this.rescanHandler = rescanHandler;
+    }
+
+    public synchronized void updateDirectories(Set<Path> directories){   // registers new dirs, drops removed ones
+        for (Map.Entry<Path, WatchKey> entry : new HashSet<>(keys.entrySet())) {
+            if (!directories.contains(entry.getKey())) {
+                entry.getValue().cancel();
+                keys.remove(entry.getKey());
+            }
+        }
+        for (Path dir : directories) {
+            WatchKey existing = keys.get(dir);
+            if (existing != null && existing.isValid()) continue;
+            try {
+                keys.put(dir, dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY));
+            } catch (IOException e) {
+                System.out.println("Failed to watch folder: " + dir + " - " + e.getMessage());
+            }
+        }
+    }
+
+    public void start(){
+        Thread watcherThread = new Thread(this::run, "NeatFile-Watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    private void run(){
+        while (running) {
+            try {
+                WatchKey key = watchService.take();
+                Set<Path> changedFiles = new LinkedHashSet<>();   // coalesces repeated create/modify events
+                Set<Path> overflowedDirs = new LinkedHashSet<>();
+
+                // keep draining while events are still arriving so a burst is handled once,
+                // without starving the handlers when files arrive faster than the coalescing window
+                long batchEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BATCH_MILLIS);
+                while (key != null) {
+                    collect(key, changedFiles, overflowedDirs);
+                    if (System.nanoTime() >= batchEnd) break;
+                    key = watchService.poll(COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                for (Path dir : overflowedDirs) {
+                    System.out.println("[Watcher] Events lost, rescanning: " + dir);
+                    rescanHandler.accept(dir);
+                }
+                for (Path file : changedFiles) {
+                    if (overflowedDirs.contains(file.getParent())) continue;  // already covered by the rescan
+                    if (Files.isRegularFile(file)) {
+                        fileHandler.accept(file);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ClosedWatchServiceException e) {
+                break;
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changedFiles, Set<Path> overflowedDirs){
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                overflowedDirs.add(dir);
+                continue;
+            }
+            changedFiles.add(dir.resolve((Path) event.context()));
+        }
+        if (!key.reset()) {   // directory was deleted or became inaccessible
+            synchronized (this) {
+                keys.remove(dir, key);
+            }
+        }
+    }
+
+    public void close(){
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close watch service: " + e.getMessage());
+        }
+    }
+}
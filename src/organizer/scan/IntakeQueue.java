@@ -0,0 +1,135 @@
+package organizer.scan;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+// Holds files that are still being written until their size and modified time have stopped changing
+// for a quiet period, so a download or copy in progress isn't parsed or moved halfway through.
+// Files that are obviously partial (browser downloads, Office lock files, our own copies and name reservations)
+// never get past here.
+// Settled files are handed to the consumer from a thread of their own, so a consumer that blocks while it is
+// saturated only holds up the hand-off, never the quiet-period checks or the scanners offering files.
+public class IntakeQueue {
+    private static final long QUIET_MILLIS = Long.getLong("neatfile.quietMillis", 2000L);
+    private static final long CHECK_MILLIS = Math.max(100, QUIET_MILLIS / 4);
+
+    private static final List<String> PARTIAL_SUFFIXES = List.of(
+            ".crdownload", ".part", ".partial", ".download", ".tmp", ".neatpart", ".neatname");
+    private static final List<String> PARTIAL_PREFIXES = List.of("~$", ".~lock.");
+
+    private record Pending(long size, long lastModified, long stableSince) {}
+    private record Ready(Path file, BasicFileAttributes attrs) {}
+
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();   // one entry per path, however often it's seen
+    private final BlockingQueue<Ready> ready = new LinkedBlockingQueue<>();  // settled, waiting for the consumer
+    private final Set<Path> readyFiles = ConcurrentHashMap.newKeySet();      // so a file is in ready at most once
+    private final BiConsumer<Path, BasicFileAttributes> consumer;           // gets files once they are complete
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "NeatFile-Intake");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread handOff = new Thread(this::handOff, "NeatFile-HandOff");
+
+    public IntakeQueue(BiConsumer<Path, BasicFileAttributes> consumer){
+        this.consumer = consumer;
+        timer.scheduleWithFixedDelay(this::checkPending, CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        handOff.setDaemon(true);
+        handOff.start();
+    }
+
+    public static boolean isPartial(Path file){
+        String name = file.getFileName().toString().toLowerCase();
+        for (String suffix : PARTIAL_SUFFIXES) {
+            if (name.endsWith(suffix)) return true;
+        }
+        for (String prefix : PARTIAL_PREFIXES) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    // justChanged: reported by the watcher, so it is being written right now even if its date looks old
+    public void offer(Path file, BasicFileAttributes attrs, boolean justChanged){
+        if (isPartial(file)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        if (!justChanged && !pending.containsKey(file) && now - lastModified >= QUIET_MILLIS) {
+            release(file, attrs);   // found by a scan and untouched for a while: nothing to wait for
+            return;
+        }
+        pending.merge(file, new Pending(attrs.size(), lastModified, now), (old, seen) ->
+                old.size() == seen.size() && old.lastModified() == seen.lastModified() ? old : seen);
+    }
+
+    private void checkPending(){
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Path, Pending> entry : pending.entrySet()) {
+            Path file = entry.getKey();
+            Pending last = entry.getValue();
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                pending.remove(file, last);   // deleted or renamed before it settled
+                continue;
+            }
+
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            if (attrs.size() != last.size() || lastModified != last.lastModified()) {
+                pending.replace(file, last, new Pending(attrs.size(), lastModified, now));   // still growing
+            } else if (now - last.stableSince() >= QUIET_MILLIS && pending.remove(file, last)) {
+                release(file, attrs);
+            }
+        }
+    }
+
+    private void release(Path file, BasicFileAttributes attrs){
+        if (readyFiles.add(file)) {
+            ready.add(new Ready(file, attrs));
+        }
+    }
+
+    private void handOff(){
+        while (true) {
+            Ready next;
+            try {
+                next = ready.take();
+            } catch (InterruptedException e) {
+                return;   // closed
+            }
+            readyFiles.remove(next.file());
+            try {
+                consumer.accept(next.file(), next.attrs());   // may wait while the workers are busy
+            } catch (RuntimeException e) {
+                System.out.println("Failed to queue file: " + next.file() + " - " + e.getMessage());
+            }
+        }
+    }
+
+    public int size(){
+        return pending.size() + ready.size();
+    }
+
+    public void close(){
+        timer.shutdownNow();
+        handOff.interrupt();
+        pending.clear();
+        ready.clear();
+        readyFiles.clear();
+    }
+}
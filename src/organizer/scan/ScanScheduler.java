@@ -0,0 +1,85 @@
+package organizer.scan;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Decides when each watch directory is scanned next. A folder where changes keep turning up is scanned
+// at the shortest interval; each scan that finds nothing doubles its interval up to the cap,
+// so folders nobody touches cost almost nothing.
+public class ScanScheduler {
+    private static class Schedule {
+        long interval;
+        long nextDue;
+    }
+
+    private final long minMillis;
+    private final long maxMillis;
+    private final Map<Path, Schedule> schedules = new HashMap<>();
+
+    public ScanScheduler(long minMillis, long maxMillis){
+        this.minMillis = minMillis;
+        this.maxMillis = Math.max(minMillis, maxMillis);
+    }
+
+    public synchronized void updateDirectories(Set<Path> directories){   // new folders are due right away
+        schedules.keySet().retainAll(directories);
+        for (Path dir : directories) {
+            schedules.computeIfAbsent(dir, k -> {
+                Schedule schedule = new Schedule();
+                schedule.interval = minMillis;
+                return schedule;
+            });
+        }
+    }
+
+    public synchronized List<Path> due(long now){
+        List<Path> due = new ArrayList<>();
+        for (Map.Entry<Path, Schedule> entry : schedules.entrySet()) {
+            if (entry.getValue().nextDue <= now) {
+                due.add(entry.getKey());
+            }
+        }
+        return due;
+    }
+
+    public synchronized void scanned(Path dir, boolean foundChanges, long now){
+        Schedule schedule = schedules.get(dir);
+        if (schedule == null) return;   // dropped while it was being scanned
+        schedule.interval = foundChanges ? minMillis : Math.min(maxMillis, schedule.interval * 2);
+        schedule.nextDue = now + schedule.interval;
+    }
+
+    public synchronized void touched(Path dir, long now){   // the watcher saw activity: check again soon
+        Schedule schedule = schedules.get(dir);
+        if (schedule == null) return;
+        schedule.interval = minMillis;
+        schedule.nextDue = Math.min(schedule.nextDue, now + minMillis);
+    }
+
+    public synchronized void retry(Path file, long at){   // a file in this folder (or below) needs another look by then
+        for (Map.Entry<Path, Schedule> entry : schedules.entrySet()) {
+            if (file.startsWith(entry.getKey())) {
+                entry.getValue().nextDue = Math.min(entry.getValue().nextDue, at);
+            }
+        }
+    }
+
+    public synchronized void expediteAll(){   // e.g. after the rules changed
+        for (Schedule schedule : schedules.values()) {
+            schedule.interval = minMillis;
+            schedule.nextDue = 0;
+        }
+    }
+
+    public synchronized long millisUntilNextDue(long now){
+        long next = now + maxMillis;
+        for (Schedule schedule : schedules.values()) {
+            next = Math.min(next, schedule.nextDue);
+        }
+        return Math.max(0, next - now);
+    }
+}
@@ -0,0 +1,153 @@
+package organizer.scan;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+// Lists a watch directory, and for recursive ones its whole subtree, with every folder listed as its own
+// fork-join task so big trees use all cores. Attributes are read during the walk and handed over with
+// each folder's changed files, so nothing downstream has to stat them again. A folder whose own mtime
+// hasn't moved since its last listing isn't listed again; its remembered subfolders are walked instead.
+public class TreeWalker {
+    private static final int THREADS = Integer.getInteger("neatfile.walkThreads", Runtime.getRuntime().availableProcessors());
+
+    private final ForkJoinPool pool = new ForkJoinPool(THREADS, pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("NeatFile-Walker-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private final Map<Path, DirectorySnapshot> snapshots;   // one per folder, kept by the caller (a concurrent map)
+
+    public TreeWalker(Map<Path, DirectorySnapshot> snapshots){
+        this.snapshots = snapshots;
+    }
+
+    // calls onChanged (from several threads at once) with the new or changed files of every folder walked;
+    // folders in skipped (e.g. target directories) are left out so moved files aren't picked up again.
+    // Returns true if any folder had changes.
+    public boolean walk(Path root, WatchOptions options, Set<Path> skipped, long ruleVersion,
+                        BiConsumer<Path, Map<Path, BasicFileAttributes>> onChanged) throws IOException {
+        Walk walk = new Walk(options, skipped, ruleVersion, onChanged);
+        ListFolder task = new ListFolder(walk, root, 0);
+        if (!options.recursive()) {
+            task.list();   // a single folder isn't worth a trip through the pool
+        } else {
+            pool.invoke(task);
+        }
+        return walk.changed.get();
+    }
+
+    public void close(){
+        pool.shutdownNow();
+    }
+
+    private record Walk(WatchOptions options, Set<Path> skipped, long ruleVersion,
+                        BiConsumer<Path, Map<Path, BasicFileAttributes>> onChanged, AtomicBoolean changed) {
+        Walk(WatchOptions options, Set<Path> skipped, long ruleVersion, BiConsumer<Path, Map<Path, BasicFileAttributes>> onChanged){
+            this(options, skipped, ruleVersion, onChanged, new AtomicBoolean());
+        }
+    }
+
+    private void forget(Path folder){   // a folder that's gone takes the snapshots of its whole subtree with it
+        DirectorySnapshot removed = snapshots.remove(folder);
+        if (removed != null) {
+            for (Path subfolder : removed.getSubfolders()) {
+                forget(subfolder);
+            }
+        }
+    }
+
+    private class ListFolder extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Walk walk;
+        private final Path folder;
+        private final int depth;
+
+        ListFolder(Walk walk, Path folder, int depth){
+            this.walk = walk;
+            this.folder = folder;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute(){
+            try {
+                invokeAll(list());
+            } catch (IOException e) {
+                System.out.println("Failed to scan folder: " + folder + " - " + e.getMessage());
+            }
+        }
+
+        List<ListFolder> list() throws IOException {   // reports this folder, returns tasks for its subfolders
+            long startedAt = System.currentTimeMillis();
+            long folderModified = Files.getLastModifiedTime(folder).toMillis();   // read before listing, so a change during it is seen next time
+            DirectorySnapshot snapshot = snapshots.computeIfAbsent(folder, DirectorySnapshot::new);
+
+            List<Path> subfolders = snapshot.unchangedSubfolders(folderModified, walk.ruleVersion(), startedAt);
+            if (subfolders == null) {
+                Map<Path, BasicFileAttributes> files = new LinkedHashMap<>();
+                subfolders = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+                    for (Path entry : stream) {
+                        BasicFileAttributes attrs;
+                        try {
+                            attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                        } catch (IOException e) {
+                            continue;   // vanished between listing and stat
+                        }
+                        if (attrs.isRegularFile()) {
+                            files.put(entry, attrs);
+                        } else if (attrs.isDirectory() && !Files.isSymbolicLink(entry)) {   // linked folders could loop
+                            subfolders.add(entry);
+                        }
+                    }
+                }
+                Map<Path, BasicFileAttributes> changed = snapshot.changedFiles(files, walk.ruleVersion());
+                List<Path> before = snapshot.getSubfolders();
+                snapshot.listed(folderModified, startedAt, walk.ruleVersion(), subfolders);
+                if (!before.isEmpty()) {   // subfolders deleted or renamed since the last listing
+                    Set<Path> now = new HashSet<>(subfolders);
+                    for (Path subfolder : before) {
+                        if (!now.contains(subfolder)) {
+                            forget(subfolder);
+                        }
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    walk.changed().set(true);
+                    walk.onChanged().accept(folder, changed);
+                }
+            }
+
+            List<ListFolder> tasks = new ArrayList<>();
+            for (Path subfolder : subfolders) {
+                if (walkInto(subfolder)) {
+                    tasks.add(new ListFolder(walk, subfolder, depth + 1));
+                }
+            }
+            return tasks;
+        }
+
+        private boolean walkInto(Path dir){
+            WatchOptions options = walk.options();
+            if (!options.recursive() || depth >= options.maxDepth()) return false;
+            return !walk.skipped().contains(dir) && !options.excluded().contains(dir);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package organizer.scan;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// How much of a watch directory a group looks at: just the files directly inside it (the default),
+// or also its subfolders down to maxDepth levels, minus any excluded subtrees.
+public record WatchOptions(boolean recursive, int maxDepth, Set<Path> excluded) {
+    public static final WatchOptions TOP_LEVEL = new WatchOptions(false, 0, Set.of());
+    public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    public WatchOptions {
+        maxDepth = recursive ? maxDepth : 0;
+        excluded = Set.copyOf(excluded);
+    }
+
+    public static WatchOptions recursive(int maxDepth, Set<Path> excluded){
+        return new WatchOptions(true, maxDepth, excluded);
+    }
+
+    // whether a file found under root belongs to this watch directory
+    public boolean covers(Path root, Path file){
+        int depth = file.getNameCount() - root.getNameCount() - 1;   // subfolder levels between root and the file
+        if (depth <= 0) return depth == 0;
+        if (!recursive || depth > maxDepth) return false;
+        for (Path skipped : excluded) {
+            if (file.startsWith(skipped)) return false;
+        }
+        return true;
+    }
+
+    // the widest of two settings, used when several groups watch the same folder
+    public WatchOptions union(WatchOptions other){
+        if (!other.recursive) return this;
+        if (!recursive) return other;
+        Set<Path> both = new HashSet<>(excluded);
+        both.retainAll(other.excluded);
+        return recursive(Math.max(maxDepth, other.maxDepth), both);
+    }
+
+    public JSONObject toJSON(Path directory){
+        JSONObject json = new JSONObject();
+        json.put("path", directory.toString());
+        if (maxDepth != UNLIMITED_DEPTH) {
+            json.put("maxDepth", maxDepth);
+        }
+        json.put("exclude", excluded.stream().map(Path::toString).toList());
+        return json;
+    }
+
+    public static WatchOptions fromJSON(JSONObject json){
+        Set<Path> excluded = new HashSet<>();
+        JSONArray exclude = json.optJSONArray("exclude");
+        if (exclude != null) {
+            for (int i = 0; i < exclude.length(); i++) {
+                excluded.add(Paths.get(exclude.getString(i)));
+            }
+        }
+        return recursive(json.optInt("maxDepth", UNLIMITED_DEPTH), excluded);
+    }
+}